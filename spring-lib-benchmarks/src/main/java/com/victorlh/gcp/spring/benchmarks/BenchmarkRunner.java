@@ -0,0 +1,34 @@
+package com.victorlh.gcp.spring.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Lanza los benchmarks con los argumentos habituales de JMH, añadiendo siempre el profiler de GC
+ * para que el informe incluya la memoria reservada por operacion (gc.alloc.rate.norm).
+ * <p>
+ * Los benchmarks miden en modo Throughput y SampleTime, este ultimo da los percentiles de latencia.
+ * <pre>
+ * mvn -Pbenchmarks package
+ * java -jar spring-lib-benchmarks/target/benchmarks.jar [filtro] [opciones JMH]
+ * </pre>
+ * Los de Firestore usan el emulador si esta definida FIRESTORE_EMULATOR_HOST, si no un servidor gRPC local que lo simula.
+ */
+public class BenchmarkRunner {
+
+	private BenchmarkRunner() {
+	}
+
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		Options options = new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,64 @@
+package com.victorlh.gcp.spring.benchmarks;
+
+import com.google.api.gax.grpc.GrpcTransportChannel;
+import com.google.api.gax.rpc.FixedTransportChannelProvider;
+import com.google.api.gax.rpc.TransportChannelProvider;
+import com.google.protobuf.Message;
+import io.grpc.BindableService;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.MethodDescriptor;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import io.grpc.protobuf.ProtoUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Servidor gRPC en un puerto libre de localhost que sustituye a un servicio de Google en los benchmarks,
+ * igual que lo haria el emulador pero sin procesos externos.
+ * Las subclases declaran sus metodos con {@link #method} en lugar de depender de los stubs generados.
+ */
+public abstract class LocalGrpcServer implements BindableService, Closeable {
+
+	private final Server server;
+	private final ManagedChannel channel;
+
+	protected LocalGrpcServer() throws IOException {
+		this.server = ServerBuilder.forPort(0)
+				.addService(this)
+				.build()
+				.start();
+		this.channel = ManagedChannelBuilder.forTarget(getHost())
+				.usePlaintext()
+				.build();
+	}
+
+	/**
+	 * Direccion del servidor en el formato de las variables *_EMULATOR_HOST
+	 */
+	public String getHost() {
+		return "localhost:" + server.getPort();
+	}
+
+	public TransportChannelProvider getTransportChannelProvider() {
+		return FixedTransportChannelProvider.create(GrpcTransportChannel.create(channel));
+	}
+
+	protected static <Q extends Message, R extends Message> MethodDescriptor<Q, R> method(String serviceName, String methodName,
+																					   MethodDescriptor.MethodType type, Q request, R response) {
+		return MethodDescriptor.<Q, R>newBuilder()
+				.setType(type)
+				.setFullMethodName(MethodDescriptor.generateFullMethodName(serviceName, methodName))
+				.setRequestMarshaller(ProtoUtils.marshaller(request))
+				.setResponseMarshaller(ProtoUtils.marshaller(response))
+				.build();
+	}
+
+	@Override
+	public void close() {
+		channel.shutdownNow();
+		server.shutdownNow();
+	}
+}
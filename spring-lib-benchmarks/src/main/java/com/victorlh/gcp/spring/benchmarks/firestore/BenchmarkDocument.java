@@ -0,0 +1,27 @@
+package com.victorlh.gcp.spring.benchmarks.firestore;
+
+import com.google.cloud.firestore.annotation.DocumentId;
+import com.victorlh.gcp.spring.libfirestore.anotations.CollectionName;
+import com.victorlh.gcp.spring.libfirestore.anotations.CreateAt;
+import com.victorlh.gcp.spring.libfirestore.anotations.UpdateAt;
+import lombok.Data;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+@CollectionName("benchmark")
+@Data
+public class BenchmarkDocument {
+
+	@DocumentId
+	private String id;
+	private String name;
+	private long amount;
+	private List<String> tags;
+	private Map<String, String> labels;
+	@CreateAt
+	private Date createAt;
+	@UpdateAt
+	private Date updateAt;
+}
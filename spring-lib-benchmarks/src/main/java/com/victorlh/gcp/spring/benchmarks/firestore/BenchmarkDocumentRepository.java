@@ -0,0 +1,30 @@
+package com.victorlh.gcp.spring.benchmarks.firestore;
+
+import com.google.cloud.firestore.Firestore;
+import com.victorlh.gcp.spring.libfirestore.AbstractFirestoreRepository;
+import com.victorlh.gcp.spring.libfirestore.bulk.BulkWriteOptions;
+
+import java.util.Collection;
+
+public class BenchmarkDocumentRepository extends AbstractFirestoreRepository<BenchmarkDocument> {
+
+	/**
+	 * Sin el limite de operaciones del BulkWriter, que empieza en 500 por segundo y alargaria la preparacion
+	 */
+	private static final BulkWriteOptions SEED_OPTIONS = BulkWriteOptions.builder()
+			.throttlingEnabled(false)
+			.build();
+
+	public BenchmarkDocumentRepository(Firestore firestore) {
+		super(firestore);
+	}
+
+	/**
+	 * Rellena la coleccion antes de medir, falla si algun documento no se ha escrito
+	 */
+	public void seed(Collection<BenchmarkDocument> documents) {
+		if (saveAll(documents, SEED_OPTIONS).hasFailures()) {
+			throw new IllegalStateException("Benchmark collection could not be seeded");
+		}
+	}
+}
@@ -0,0 +1,113 @@
+package com.victorlh.gcp.spring.benchmarks.firestore;
+
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.victorlh.gcp.spring.libfirestore.mapper.DocumentMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion de un resultado de documentCount documentos con el mapper compilado del repositorio y con el del cliente.
+ * Solo mide la conversion, los snapshots se leen una vez de {@link FakeFirestoreServer} al preparar el benchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class DocumentMapperBenchmark {
+
+	@Param({"1000", "10000"})
+	public int documentCount;
+
+	private FakeFirestoreServer fakeFirestoreServer;
+	private Firestore firestore;
+	private DocumentMapper<BenchmarkDocument> documentMapper;
+	private List<QueryDocumentSnapshot> documentSnapshots;
+	private List<BenchmarkDocument> documents;
+
+	@Setup
+	public void setup() throws IOException, ExecutionException, InterruptedException {
+		fakeFirestoreServer = new FakeFirestoreServer();
+		firestore = fakeFirestoreServer.newFirestore("spring-lib-benchmarks");
+		BenchmarkDocumentRepository repository = new BenchmarkDocumentRepository(firestore);
+		documentMapper = repository.getDocumentMapper();
+		if (documentMapper == null) {
+			throw new IllegalStateException("BenchmarkDocument has no compiled mapper");
+		}
+
+		documents = new ArrayList<>(documentCount);
+		for (int i = 0; i < documentCount; i++) {
+			documents.add(newDocument(String.format("document-%06d", i), i));
+		}
+		repository.seed(documents);
+		documentSnapshots = repository.getCollectionReference().get().get().getDocuments();
+
+		for (QueryDocumentSnapshot documentSnapshot : documentSnapshots) {
+			if (!documentMapper.toObject(documentSnapshot).equals(documentSnapshot.toObject(BenchmarkDocument.class))) {
+				throw new IllegalStateException("Compiled mapper differs from default mapper for " + documentSnapshot.getId());
+			}
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		firestore.close();
+		fakeFirestoreServer.close();
+	}
+
+	@Benchmark
+	public List<BenchmarkDocument> compiledToObject() {
+		List<BenchmarkDocument> result = new ArrayList<>(documentSnapshots.size());
+		for (QueryDocumentSnapshot documentSnapshot : documentSnapshots) {
+			result.add(documentMapper.toObject(documentSnapshot));
+		}
+		return result;
+	}
+
+	@Benchmark
+	public List<BenchmarkDocument> defaultToObject() {
+		List<BenchmarkDocument> result = new ArrayList<>(documentSnapshots.size());
+		for (QueryDocumentSnapshot documentSnapshot : documentSnapshots) {
+			result.add(documentSnapshot.toObject(BenchmarkDocument.class));
+		}
+		return result;
+	}
+
+	@Benchmark
+	public List<Map<String, Object>> compiledToMap() {
+		List<Map<String, Object>> result = new ArrayList<>(documents.size());
+		for (BenchmarkDocument document : documents) {
+			result.add(documentMapper.toMap(document));
+		}
+		return result;
+	}
+
+	private static BenchmarkDocument newDocument(String id, long amount) {
+		BenchmarkDocument document = new BenchmarkDocument();
+		document.setId(id);
+		document.setName("name-" + id);
+		document.setAmount(amount);
+		document.setTags(List.of("alpha", "beta", "gamma"));
+		document.setLabels(Map.of("source", "benchmark", "version", "1"));
+		return document;
+	}
+}
@@ -0,0 +1,375 @@
+package com.victorlh.gcp.spring.benchmarks.firestore;
+
+import com.google.cloud.NoCredentials;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.FirestoreOptions;
+import com.google.firestore.v1.AggregationResult;
+import com.google.firestore.v1.BatchGetDocumentsRequest;
+import com.google.firestore.v1.BatchGetDocumentsResponse;
+import com.google.firestore.v1.BatchWriteRequest;
+import com.google.firestore.v1.BatchWriteResponse;
+import com.google.firestore.v1.CommitRequest;
+import com.google.firestore.v1.CommitResponse;
+import com.google.firestore.v1.Cursor;
+import com.google.firestore.v1.Document;
+import com.google.firestore.v1.PartitionQueryRequest;
+import com.google.firestore.v1.PartitionQueryResponse;
+import com.google.firestore.v1.Precondition;
+import com.google.firestore.v1.RunAggregationQueryRequest;
+import com.google.firestore.v1.RunAggregationQueryResponse;
+import com.google.firestore.v1.RunQueryRequest;
+import com.google.firestore.v1.RunQueryResponse;
+import com.google.firestore.v1.StructuredAggregationQuery;
+import com.google.firestore.v1.StructuredQuery;
+import com.google.firestore.v1.Value;
+import com.google.firestore.v1.Write;
+import com.google.firestore.v1.WriteResult;
+import com.google.protobuf.NullValue;
+import com.google.protobuf.Timestamp;
+import com.victorlh.gcp.spring.benchmarks.LocalGrpcServer;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.Status;
+import io.grpc.stub.ServerCalls;
+import io.grpc.stub.StreamObserver;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Servidor de Firestore local en memoria con lo minimo que usa el repositorio: commit, batchWrite, batchGetDocuments, runQuery,
+ * runAggregationQuery y partitionQuery.
+ * Las consultas solo aplican la coleccion o grupo de colecciones, el select de campos de primer nivel, los cursores por nombre,
+ * el offset y el limit, y devuelven los documentos ordenados por ruta.
+ * No sustituye al emulador, solo sirve para medir el cliente sin procesos externos.
+ */
+public class FakeFirestoreServer extends LocalGrpcServer {
+
+	private static final String SERVICE_NAME = "google.firestore.v1.Firestore";
+
+	private final NavigableMap<String, Document> documents = new ConcurrentSkipListMap<>();
+
+	public FakeFirestoreServer() throws IOException {
+		super();
+	}
+
+	public Firestore newFirestore(String projectId) {
+		return FirestoreOptions.newBuilder()
+				.setProjectId(projectId)
+				.setCredentials(NoCredentials.getInstance())
+				.setHost(getHost())
+				.build()
+				.getService();
+	}
+
+	@Override
+	public ServerServiceDefinition bindService() {
+		return ServerServiceDefinition.builder(SERVICE_NAME)
+				.addMethod(method(SERVICE_NAME, "Commit", MethodDescriptor.MethodType.UNARY,
+						CommitRequest.getDefaultInstance(), CommitResponse.getDefaultInstance()), ServerCalls.asyncUnaryCall(this::commit))
+				.addMethod(method(SERVICE_NAME, "BatchWrite", MethodDescriptor.MethodType.UNARY,
+						BatchWriteRequest.getDefaultInstance(), BatchWriteResponse.getDefaultInstance()), ServerCalls.asyncUnaryCall(this::batchWrite))
+				.addMethod(method(SERVICE_NAME, "BatchGetDocuments", MethodDescriptor.MethodType.SERVER_STREAMING,
+						BatchGetDocumentsRequest.getDefaultInstance(), BatchGetDocumentsResponse.getDefaultInstance()), ServerCalls.asyncServerStreamingCall(this::batchGetDocuments))
+				.addMethod(method(SERVICE_NAME, "RunQuery", MethodDescriptor.MethodType.SERVER_STREAMING,
+						RunQueryRequest.getDefaultInstance(), RunQueryResponse.getDefaultInstance()), ServerCalls.asyncServerStreamingCall(this::runQuery))
+				.addMethod(method(SERVICE_NAME, "RunAggregationQuery", MethodDescriptor.MethodType.SERVER_STREAMING,
+						RunAggregationQueryRequest.getDefaultInstance(), RunAggregationQueryResponse.getDefaultInstance()), ServerCalls.asyncServerStreamingCall(this::runAggregationQuery))
+				.addMethod(method(SERVICE_NAME, "PartitionQuery", MethodDescriptor.MethodType.UNARY,
+						PartitionQueryRequest.getDefaultInstance(), PartitionQueryResponse.getDefaultInstance()), ServerCalls.asyncUnaryCall(this::partitionQuery))
+				.build();
+	}
+
+	private synchronized void commit(CommitRequest request, StreamObserver<CommitResponse> responseObserver) {
+		for (Write write : request.getWritesList()) {
+			Status status = checkPrecondition(write);
+			if (status != null) {
+				responseObserver.onError(status.asRuntimeException());
+				return;
+			}
+		}
+
+		Timestamp now = now();
+		CommitResponse.Builder response = CommitResponse.newBuilder().setCommitTime(now);
+		for (Write write : request.getWritesList()) {
+			if (write.getOperationCase() == Write.OperationCase.UPDATE) {
+				applyUpdate(write, now);
+			} else if (write.getOperationCase() == Write.OperationCase.DELETE) {
+				documents.remove(write.getDelete());
+			}
+			response.addWriteResults(WriteResult.newBuilder().setUpdateTime(now));
+		}
+		responseObserver.onNext(response.build());
+		responseObserver.onCompleted();
+	}
+
+	/**
+	 * Como el BulkWriter: cada escritura se aplica por separado y devuelve su propio estado
+	 */
+	private synchronized void batchWrite(BatchWriteRequest request, StreamObserver<BatchWriteResponse> responseObserver) {
+		Timestamp now = now();
+		BatchWriteResponse.Builder response = BatchWriteResponse.newBuilder();
+		for (Write write : request.getWritesList()) {
+			Status status = checkPrecondition(write);
+			if (status == null) {
+				if (write.getOperationCase() == Write.OperationCase.UPDATE) {
+					applyUpdate(write, now);
+				} else if (write.getOperationCase() == Write.OperationCase.DELETE) {
+					documents.remove(write.getDelete());
+				}
+				response.addWriteResults(WriteResult.newBuilder().setUpdateTime(now));
+				response.addStatus(com.google.rpc.Status.newBuilder().setCode(Status.Code.OK.value()));
+			} else {
+				response.addWriteResults(WriteResult.getDefaultInstance());
+				response.addStatus(com.google.rpc.Status.newBuilder().setCode(status.getCode().value()).setMessage(status.getDescription()));
+			}
+		}
+		responseObserver.onNext(response.build());
+		responseObserver.onCompleted();
+	}
+
+	private void batchGetDocuments(BatchGetDocumentsRequest request, StreamObserver<BatchGetDocumentsResponse> responseObserver) {
+		Timestamp now = now();
+		for (String name : request.getDocumentsList()) {
+			BatchGetDocumentsResponse.Builder response = BatchGetDocumentsResponse.newBuilder().setReadTime(now);
+			Document document = documents.get(name);
+			if (document == null) {
+				response.setMissing(name);
+			} else {
+				response.setFound(document);
+			}
+			responseObserver.onNext(response.build());
+		}
+		responseObserver.onCompleted();
+	}
+
+	private void runQuery(RunQueryRequest request, StreamObserver<RunQueryResponse> responseObserver) {
+		Timestamp now = now();
+		StructuredQuery query = request.getStructuredQuery();
+		List<Document> matching = query(request.getParent(), query);
+		for (Document document : matching) {
+			responseObserver.onNext(RunQueryResponse.newBuilder().setDocument(select(document, query)).setReadTime(now).build());
+		}
+		if (matching.isEmpty()) {
+			responseObserver.onNext(RunQueryResponse.newBuilder().setReadTime(now).build());
+		}
+		responseObserver.onCompleted();
+	}
+
+	/**
+	 * count, sum y avg sobre los documentos de la consulta. Solo se suman campos de primer nivel enteros o decimales,
+	 * la suma es entera mientras todos los valores lo sean y no desborde
+	 */
+	private void runAggregationQuery(RunAggregationQueryRequest request, StreamObserver<RunAggregationQueryResponse> responseObserver) {
+		StructuredAggregationQuery aggregationQuery = request.getStructuredAggregationQuery();
+		List<Document> matching = query(request.getParent(), aggregationQuery.getStructuredQuery());
+
+		AggregationResult.Builder result = AggregationResult.newBuilder();
+		for (StructuredAggregationQuery.Aggregation aggregation : aggregationQuery.getAggregationsList()) {
+			Value value;
+			if (aggregation.hasCount()) {
+				value = Value.newBuilder().setIntegerValue(matching.size()).build();
+			} else {
+				String fieldPath = aggregation.hasSum() ? aggregation.getSum().getField().getFieldPath() : aggregation.getAvg().getField().getFieldPath();
+				value = aggregate(matching, fieldPath, aggregation.hasAvg());
+			}
+			result.putAggregateFields(aggregation.getAlias(), value);
+		}
+		responseObserver.onNext(RunAggregationQueryResponse.newBuilder().setResult(result).setReadTime(now()).build());
+		responseObserver.onCompleted();
+	}
+
+	private static Value aggregate(List<Document> matching, String fieldPath, boolean average) {
+		long numericCount = 0;
+		long longSum = 0;
+		double doubleSum = 0;
+		boolean integral = true;
+		for (Document document : matching) {
+			Value value = document.getFieldsMap().get(fieldPath);
+			if (value == null) {
+				continue;
+			}
+			if (value.getValueTypeCase() == Value.ValueTypeCase.INTEGER_VALUE) {
+				if (integral) {
+					try {
+						longSum = Math.addExact(longSum, value.getIntegerValue());
+					} catch (ArithmeticException e) {
+						integral = false;
+					}
+				}
+				doubleSum += value.getIntegerValue();
+			} else if (value.getValueTypeCase() == Value.ValueTypeCase.DOUBLE_VALUE) {
+				integral = false;
+				doubleSum += value.getDoubleValue();
+			} else {
+				continue;
+			}
+			numericCount++;
+		}
+
+		if (average) {
+			return numericCount == 0
+					? Value.newBuilder().setNullValue(NullValue.NULL_VALUE).build()
+					: Value.newBuilder().setDoubleValue(doubleSum / numericCount).build();
+		}
+		return integral ? Value.newBuilder().setIntegerValue(longSum).build() : Value.newBuilder().setDoubleValue(doubleSum).build();
+	}
+
+	/**
+	 * Documentos de la consulta tras aplicar los cursores, el offset y el limit
+	 */
+	private List<Document> query(String parent, StructuredQuery query) {
+		int offset = query.getOffset();
+		int limit = query.hasLimit() ? query.getLimit().getValue() : Integer.MAX_VALUE;
+
+		List<Document> matching = new ArrayList<>();
+		int index = 0;
+		for (Document document : getDocuments(parent, query)) {
+			if (matching.size() >= limit) {
+				break;
+			}
+			if (!isAfterStart(document, query) || index++ < offset) {
+				continue;
+			}
+			if (isAfterEnd(document, query)) {
+				break;
+			}
+			matching.add(document);
+		}
+		return matching;
+	}
+
+	/**
+	 * Divide los documentos de la consulta en partition_count + 1 tramos iguales, con cursores por nombre de documento
+	 */
+	private void partitionQuery(PartitionQueryRequest request, StreamObserver<PartitionQueryResponse> responseObserver) {
+		List<Document> matching = new ArrayList<>();
+		getDocuments(request.getParent(), request.getStructuredQuery()).forEach(matching::add);
+
+		PartitionQueryResponse.Builder response = PartitionQueryResponse.newBuilder();
+		long splitPoints = Math.min(request.getPartitionCount(), Math.max(0, matching.size() - 1));
+		for (long i = 1; i <= splitPoints; i++) {
+			Document document = matching.get((int) (i * matching.size() / (splitPoints + 1)));
+			response.addPartitions(Cursor.newBuilder().addValues(Value.newBuilder().setReferenceValue(document.getName())));
+		}
+		responseObserver.onNext(response.build());
+		responseObserver.onCompleted();
+	}
+
+	/**
+	 * Documentos de la coleccion (o del grupo de colecciones con allDescendants) ordenados por ruta
+	 */
+	private Iterable<Document> getDocuments(String parent, StructuredQuery query) {
+		StructuredQuery.CollectionSelector from = query.getFrom(0);
+		String prefix = parent + "/";
+		return () -> documents.subMap(prefix, prefix + Character.MAX_VALUE).values().stream()
+				.filter(document -> {
+					String[] segments = document.getName().substring(prefix.length()).split("/");
+					String collectionId = segments[segments.length - 2];
+					return collectionId.equals(from.getCollectionId()) && (from.getAllDescendants() || segments.length == 2);
+				})
+				.iterator();
+	}
+
+	/**
+	 * Los cursores solo se aplican si son de un unico valor referencia, es decir ordenados solo por __name__
+	 */
+	private static boolean isAfterStart(Document document, StructuredQuery query) {
+		if (!query.hasStartAt() || !isNameCursor(query.getStartAt())) {
+			return true;
+		}
+		int comparison = document.getName().compareTo(query.getStartAt().getValues(0).getReferenceValue());
+		return query.getStartAt().getBefore() ? comparison >= 0 : comparison > 0;
+	}
+
+	private static boolean isAfterEnd(Document document, StructuredQuery query) {
+		if (!query.hasEndAt() || !isNameCursor(query.getEndAt())) {
+			return false;
+		}
+		int comparison = document.getName().compareTo(query.getEndAt().getValues(0).getReferenceValue());
+		return query.getEndAt().getBefore() ? comparison >= 0 : comparison > 0;
+	}
+
+	private static boolean isNameCursor(Cursor cursor) {
+		return cursor.getValuesCount() == 1 && cursor.getValues(0).getValueTypeCase() == Value.ValueTypeCase.REFERENCE_VALUE;
+	}
+
+	private static Document select(Document document, StructuredQuery query) {
+		if (!query.hasSelect()) {
+			return document;
+		}
+		Document.Builder projected = document.toBuilder().clearFields();
+		for (StructuredQuery.FieldReference field : query.getSelect().getFieldsList()) {
+			Value value = document.getFieldsMap().get(field.getFieldPath());
+			if (value != null) {
+				projected.putFields(field.getFieldPath(), value);
+			}
+		}
+		return projected.build();
+	}
+
+	private Status checkPrecondition(Write write) {
+		if (!write.hasCurrentDocument()) {
+			return null;
+		}
+		String name = write.getOperationCase() == Write.OperationCase.UPDATE ? write.getUpdate().getName() : write.getDelete();
+		if (write.getCurrentDocument().getConditionTypeCase() == Precondition.ConditionTypeCase.UPDATE_TIME) {
+			Document current = documents.get(name);
+			if (current == null || !current.getUpdateTime().equals(write.getCurrentDocument().getUpdateTime())) {
+				return Status.FAILED_PRECONDITION.withDescription(name);
+			}
+			return null;
+		}
+		if (write.getCurrentDocument().getConditionTypeCase() != Precondition.ConditionTypeCase.EXISTS) {
+			return null;
+		}
+		boolean exists = documents.containsKey(name);
+		if (write.getCurrentDocument().getExists() && !exists) {
+			return Status.NOT_FOUND.withDescription(name);
+		}
+		if (!write.getCurrentDocument().getExists() && exists) {
+			return Status.ALREADY_EXISTS.withDescription(name);
+		}
+		return null;
+	}
+
+	private void applyUpdate(Write write, Timestamp now) {
+		Document update = write.getUpdate();
+		Document current = documents.get(update.getName());
+
+		Map<String, Value> fields;
+		if (write.hasUpdateMask() && current != null) {
+			fields = new HashMap<>(current.getFieldsMap());
+			for (String fieldPath : write.getUpdateMask().getFieldPathsList()) {
+				Value value = update.getFieldsMap().get(fieldPath);
+				if (value == null) {
+					fields.remove(fieldPath);
+				} else {
+					fields.put(fieldPath, value);
+				}
+			}
+		} else {
+			fields = update.getFieldsMap();
+		}
+
+		documents.put(update.getName(), Document.newBuilder()
+				.setName(update.getName())
+				.putAllFields(fields)
+				.setCreateTime(current == null ? now : current.getCreateTime())
+				.setUpdateTime(now)
+				.build());
+	}
+
+	private static Timestamp now() {
+		long millis = System.currentTimeMillis();
+		return Timestamp.newBuilder()
+				.setSeconds(millis / 1000)
+				.setNanos((int) (millis % 1000) * 1_000_000)
+				.build();
+	}
+}
@@ -0,0 +1,142 @@
+package com.victorlh.gcp.spring.benchmarks.firestore;
+
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.FirestoreOptions;
+import com.victorlh.gcp.spring.libfirestore.CollectionPageRequest;
+import com.victorlh.gcp.spring.libfirestore.Projection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Operaciones de {@link com.victorlh.gcp.spring.libfirestore.AbstractFirestoreRepository} sobre una coleccion
+ * de collectionSize documentos. Con FIRESTORE_EMULATOR_HOST se mide contra el emulador, si no contra {@link FakeFirestoreServer}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class FirestoreRepositoryBenchmark {
+
+	private static final String PROJECT_ID = "spring-lib-benchmarks";
+	private static final String FIRESTORE_EMULATOR_HOST = "FIRESTORE_EMULATOR_HOST";
+	private static final Projection<Map<String, Object>> SUMMARY = Projection.fields("name", "amount");
+
+	@Param({"100", "1000"})
+	public int collectionSize;
+	@Param("20")
+	public int pageSize;
+
+	private FakeFirestoreServer fakeFirestoreServer;
+	private Firestore firestore;
+	private BenchmarkDocumentRepository repository;
+	private String[] documentIds;
+
+	@Setup
+	public void setup() throws IOException {
+		if (System.getenv(FIRESTORE_EMULATOR_HOST) == null) {
+			fakeFirestoreServer = new FakeFirestoreServer();
+			firestore = fakeFirestoreServer.newFirestore(PROJECT_ID);
+		} else {
+			firestore = FirestoreOptions.newBuilder()
+					.setProjectId(PROJECT_ID)
+					.build()
+					.getService();
+		}
+		repository = new BenchmarkDocumentRepository(firestore);
+
+		documentIds = new String[collectionSize];
+		List<BenchmarkDocument> documents = new ArrayList<>(collectionSize);
+		for (int i = 0; i < collectionSize; i++) {
+			documentIds[i] = String.format("document-%06d", i);
+			documents.add(newDocument(documentIds[i]));
+		}
+		repository.seed(documents);
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		firestore.close();
+		if (fakeFirestoreServer != null) {
+			fakeFirestoreServer.close();
+		}
+	}
+
+	@Benchmark
+	public String save() {
+		return repository.save(newDocument(randomDocumentId()));
+	}
+
+	@Benchmark
+	public Optional<BenchmarkDocument> findById() {
+		return repository.findById(randomDocumentId());
+	}
+
+	@Benchmark
+	public List<BenchmarkDocument> findAll() {
+		return repository.findAll();
+	}
+
+	@Benchmark
+	public List<BenchmarkDocument> paginate() {
+		int pages = Math.max(1, collectionSize / pageSize);
+		CollectionPageRequest collectionPageRequest = CollectionPageRequest.builder()
+				.limit(pageSize)
+				.offset(ThreadLocalRandom.current().nextInt(pages) * pageSize)
+				.build();
+		return repository.paginate(repository.getCollectionReference(), repository.getOrderByName(), collectionPageRequest, pageSize);
+	}
+
+	@Benchmark
+	public long count() {
+		return repository.count();
+	}
+
+	@Benchmark
+	public List<Map<String, Object>> findAllProjected() {
+		return repository.findAll(SUMMARY);
+	}
+
+	@Benchmark
+	public List<Map<String, Object>> paginateProjected() {
+		int pages = Math.max(1, collectionSize / pageSize);
+		CollectionPageRequest collectionPageRequest = CollectionPageRequest.builder()
+				.limit(pageSize)
+				.offset(ThreadLocalRandom.current().nextInt(pages) * pageSize)
+				.build();
+		return repository.paginate(repository.getCollectionReference(), repository.getOrderByName(), collectionPageRequest, pageSize, SUMMARY);
+	}
+
+	private String randomDocumentId() {
+		return documentIds[ThreadLocalRandom.current().nextInt(documentIds.length)];
+	}
+
+	private static BenchmarkDocument newDocument(String id) {
+		BenchmarkDocument document = new BenchmarkDocument();
+		document.setId(id);
+		document.setName("name-" + id);
+		document.setAmount(ThreadLocalRandom.current().nextLong(1_000_000));
+		document.setTags(List.of("alpha", "beta", "gamma"));
+		document.setLabels(Map.of("source", "benchmark", "version", "1"));
+		return document;
+	}
+}
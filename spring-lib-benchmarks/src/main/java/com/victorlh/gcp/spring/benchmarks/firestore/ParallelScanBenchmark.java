@@ -0,0 +1,88 @@
+package com.victorlh.gcp.spring.benchmarks.firestore;
+
+import com.google.cloud.firestore.Firestore;
+import com.victorlh.gcp.spring.libfirestore.scan.ScanOptions;
+import com.victorlh.gcp.spring.libfirestore.scan.ScanProgress;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recorrido completo de una coleccion de collectionSize documentos con streamAll (un hilo) y con parallelScan
+ * sobre {@link FakeFirestoreServer}. El callback simula el trabajo por documento de una migracion.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ParallelScanBenchmark {
+
+	private static final long WORK_TOKENS = 2_000;
+
+	@Param("10000")
+	public int collectionSize;
+	@Param({"2", "4"})
+	public int parallelism;
+
+	private FakeFirestoreServer fakeFirestoreServer;
+	private Firestore firestore;
+	private BenchmarkDocumentRepository repository;
+
+	@Setup
+	public void setup() throws IOException {
+		fakeFirestoreServer = new FakeFirestoreServer();
+		firestore = fakeFirestoreServer.newFirestore("spring-lib-benchmarks");
+		repository = new BenchmarkDocumentRepository(firestore);
+
+		List<BenchmarkDocument> documents = new ArrayList<>(collectionSize);
+		for (int i = 0; i < collectionSize; i++) {
+			BenchmarkDocument document = new BenchmarkDocument();
+			document.setId(String.format("document-%06d", i));
+			document.setName("name-" + i);
+			document.setAmount(i);
+			document.setTags(List.of("alpha", "beta", "gamma"));
+			document.setLabels(Map.of("source", "benchmark", "version", "1"));
+			documents.add(document);
+		}
+		repository.seed(documents);
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		firestore.close();
+		fakeFirestoreServer.close();
+	}
+
+	@Benchmark
+	public long streamAll() {
+		return repository.streamAll()
+				.peek(document -> Blackhole.consumeCPU(WORK_TOKENS))
+				.count();
+	}
+
+	@Benchmark
+	public ScanProgress parallelScan() {
+		ScanOptions scanOptions = ScanOptions.builder()
+				.parallelism(parallelism)
+				.build();
+		return repository.parallelScan(document -> Blackhole.consumeCPU(WORK_TOKENS), scanOptions);
+	}
+}
@@ -0,0 +1,43 @@
+package com.victorlh.gcp.spring.benchmarks.pubsub;
+
+import com.google.pubsub.v1.PublishRequest;
+import com.google.pubsub.v1.PublishResponse;
+import com.victorlh.gcp.spring.benchmarks.LocalGrpcServer;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.stub.ServerCalls;
+import io.grpc.stub.StreamObserver;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Servidor de Pub/Sub local que acepta cualquier publish y devuelve ids consecutivos
+ */
+public class FakePublisherServer extends LocalGrpcServer {
+
+	private static final String SERVICE_NAME = "google.pubsub.v1.Publisher";
+
+	private final AtomicLong messageIds = new AtomicLong();
+
+	public FakePublisherServer() throws IOException {
+		super();
+	}
+
+	@Override
+	public ServerServiceDefinition bindService() {
+		return ServerServiceDefinition.builder(SERVICE_NAME)
+				.addMethod(method(SERVICE_NAME, "Publish", MethodDescriptor.MethodType.UNARY,
+						PublishRequest.getDefaultInstance(), PublishResponse.getDefaultInstance()), ServerCalls.asyncUnaryCall(this::publish))
+				.build();
+	}
+
+	private void publish(PublishRequest request, StreamObserver<PublishResponse> responseObserver) {
+		PublishResponse.Builder response = PublishResponse.newBuilder();
+		for (int i = 0; i < request.getMessagesCount(); i++) {
+			response.addMessageIds(Long.toString(messageIds.incrementAndGet()));
+		}
+		responseObserver.onNext(response.build());
+		responseObserver.onCompleted();
+	}
+}
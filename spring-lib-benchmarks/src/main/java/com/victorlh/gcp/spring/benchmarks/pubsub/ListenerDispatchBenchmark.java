@@ -0,0 +1,133 @@
+package com.victorlh.gcp.spring.benchmarks.pubsub;
+
+import com.google.cloud.pubsub.v1.AckReplyConsumer;
+import com.google.cloud.pubsub.v1.MessageReceiver;
+import com.google.protobuf.ByteString;
+import com.google.pubsub.v1.PubsubMessage;
+import com.victorlh.gcp.spring.libpubsub.codec.MessageCodec;
+import com.victorlh.gcp.spring.libpubsub.conf.PubSubProperties;
+import com.victorlh.gcp.spring.libpubsub.consumer.ListenerDispatchSupport;
+import com.victorlh.gcp.spring.libpubsub.consumer.PubSubListener;
+import com.victorlh.gcp.spring.libpubsub.consumer.PubSubListenerAnnotationBeanPostProcessor;
+import com.victorlh.gcp.spring.libpubsub.consumer.PubSubListenerContainer;
+import com.victorlh.gcp.spring.libpubsub.dedup.DeduplicationStore;
+import com.victorlh.gcp.spring.libpubsub.metrics.PubSubMetrics;
+import com.victorlh.gcp.spring.libpubsub.publisher.PubSubPublisher;
+import lombok.Data;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Despacho de un mensaje ya recibido hasta el metodo del listener: deduplicacion, decodificacion del payload,
+ * invocacion y ack, con el receptor que construye {@link ListenerDispatchSupport} sin arrancar subscribers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ListenerDispatchBenchmark {
+
+	private static final String SUBSCRIPTION = "benchmark";
+	/**
+	 * Mas mensajes distintos que el tamaño por defecto de la deduplicacion, para que al dar la vuelta no sean duplicados
+	 */
+	private static final int MESSAGE_COUNT = 1 << 18;
+	private static final AckReplyConsumer ACK_REPLY_CONSUMER = new AckReplyConsumer() {
+		@Override
+		public void ack() {
+		}
+
+		@Override
+		public void nack() {
+		}
+	};
+
+	@Param({"onMessage", "onString", "onJson", "onDeduplicated"})
+	public String listener;
+
+	private ListenerDispatchSupport listenerReceiver;
+	private MessageReceiver receiver;
+	private PubsubMessage[] messages;
+	private int index;
+
+	@Setup
+	public void setup() {
+		StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+		PubSubProperties pubSubProperties = new PubSubProperties();
+		PubSubListenerAnnotationBeanPostProcessor processor = new PubSubListenerAnnotationBeanPostProcessor(null, pubSubProperties,
+				beanFactory.getBeanProvider(MessageCodec.class), beanFactory.getBeanProvider(PubSubPublisher.class),
+				beanFactory.getBeanProvider(DeduplicationStore.class), beanFactory.getBeanProvider(PubSubMetrics.class),
+				beanFactory.getBeanProvider(PubSubListenerContainer.class));
+		processor.setBeanFactory(beanFactory);
+
+		listenerReceiver = ListenerDispatchSupport.create(processor, new BenchmarkListeners(), listener, SUBSCRIPTION);
+		receiver = listenerReceiver.getReceiver();
+
+		messages = new PubsubMessage[MESSAGE_COUNT];
+		for (int i = 0; i < MESSAGE_COUNT; i++) {
+			String data = String.format("{\"id\":%d,\"name\":\"message-%d\",\"amount\":%d}", i, i, i * 10L);
+			messages[i] = PubsubMessage.newBuilder()
+					.setMessageId(Integer.toString(i))
+					.setData(ByteString.copyFromUtf8(data))
+					.putAttributes("source", "benchmark")
+					.build();
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		listenerReceiver.close();
+	}
+
+	@Benchmark
+	public void dispatch() {
+		receiver.receiveMessage(messages[index++ & (MESSAGE_COUNT - 1)], ACK_REPLY_CONSUMER);
+	}
+
+	public static class BenchmarkListeners {
+
+		private long received;
+
+		@PubSubListener(subscriptions = SUBSCRIPTION)
+		public void onMessage(PubsubMessage message) {
+			received += message.getData().size();
+		}
+
+		@PubSubListener(subscriptions = SUBSCRIPTION)
+		public void onString(String payload) {
+			received += payload.length();
+		}
+
+		@PubSubListener(subscriptions = SUBSCRIPTION)
+		public void onJson(BenchmarkPayload payload) {
+			received += payload.getAmount();
+		}
+
+		@PubSubListener(subscriptions = SUBSCRIPTION, deduplicate = true)
+		public void onDeduplicated(String payload) {
+			received += payload.length();
+		}
+	}
+
+	@Data
+	public static class BenchmarkPayload {
+		private long id;
+		private String name;
+		private long amount;
+	}
+}
@@ -0,0 +1,83 @@
+package com.victorlh.gcp.spring.benchmarks.pubsub;
+
+import com.google.api.core.ApiFuture;
+import com.victorlh.gcp.spring.libpubsub.conf.PubSubProperties;
+import com.victorlh.gcp.spring.libpubsub.publisher.PubSubPublisher;
+import org.apache.commons.lang3.StringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link PubSubPublisher#sendMessage(String, String, Map)} contra {@link FakePublisherServer}.
+ * <ul>
+ *     <li>sendMessage: solo encolado, con el batching por defecto y control de flujo para no acumular mensajes sin limite</li>
+ *     <li>sendMessageAndWait: ida y vuelta de un mensaje, sin batching</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PubSubPublisherBenchmark {
+
+	private static final String BATCHED_TOPIC = "benchmark-batched";
+	private static final String UNBATCHED_TOPIC = "benchmark-unbatched";
+	private static final Map<String, String> ATTRIBUTES = Map.of("source", "benchmark", "version", "1");
+
+	@Param({"128", "4096"})
+	public int payloadSize;
+
+	private FakePublisherServer fakePublisherServer;
+	private PubSubPublisher pubSubPublisher;
+	private String payload;
+
+	@Setup
+	public void setup() throws IOException {
+		fakePublisherServer = new FakePublisherServer();
+
+		PubSubProperties pubSubProperties = new PubSubProperties();
+		PubSubProperties.PublisherProperties batched = new PubSubProperties.PublisherProperties();
+		batched.setMaxOutstandingMessages(10_000L);
+		pubSubProperties.getTopics().put(BATCHED_TOPIC, batched);
+		PubSubProperties.PublisherProperties unbatched = new PubSubProperties.PublisherProperties();
+		unbatched.setBatchElementCount(1L);
+		pubSubProperties.getTopics().put(UNBATCHED_TOPIC, unbatched);
+
+		pubSubPublisher = new PubSubPublisher(null, pubSubProperties);
+		pubSubPublisher.setTransportChannelProvider(fakePublisherServer.getTransportChannelProvider());
+		payload = StringUtils.repeat('x', payloadSize);
+	}
+
+	@TearDown
+	public void tearDown() throws InterruptedException {
+		pubSubPublisher.destroy();
+		fakePublisherServer.close();
+	}
+
+	@Benchmark
+	public ApiFuture<String> sendMessage() {
+		return pubSubPublisher.sendMessage(BATCHED_TOPIC, payload, ATTRIBUTES);
+	}
+
+	@Benchmark
+	public String sendMessageAndWait() throws ExecutionException, InterruptedException {
+		return pubSubPublisher.sendMessage(UNBATCHED_TOPIC, payload, ATTRIBUTES).get();
+	}
+}
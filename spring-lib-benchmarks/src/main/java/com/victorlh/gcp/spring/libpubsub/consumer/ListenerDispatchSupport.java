@@ -0,0 +1,32 @@
+package com.victorlh.gcp.spring.libpubsub.consumer;
+
+import com.google.cloud.pubsub.v1.MessageReceiver;
+
+/**
+ * Acceso de los benchmarks al receptor de un {@link PubSubListener}, que es package-private en la libreria.
+ * Solo existe en el modulo de benchmarks, la API publica de spring-lib-pubsub no cambia.
+ */
+public final class ListenerDispatchSupport implements AutoCloseable {
+
+	private final PubSubListenerAnnotationBeanPostProcessor.ListenerReceiver listenerReceiver;
+
+	private ListenerDispatchSupport(PubSubListenerAnnotationBeanPostProcessor.ListenerReceiver listenerReceiver) {
+		this.listenerReceiver = listenerReceiver;
+	}
+
+	/**
+	 * Construye el receptor del metodo methodName del bean para la suscripcion, como el de su subscriber pero sin crearlo
+	 */
+	public static ListenerDispatchSupport create(PubSubListenerAnnotationBeanPostProcessor processor, Object bean, String methodName, String subscription) {
+		return new ListenerDispatchSupport(processor.newListenerReceiver(bean, methodName, subscription));
+	}
+
+	public MessageReceiver getReceiver() {
+		return listenerReceiver.getReceiver();
+	}
+
+	@Override
+	public void close() {
+		listenerReceiver.close();
+	}
+}
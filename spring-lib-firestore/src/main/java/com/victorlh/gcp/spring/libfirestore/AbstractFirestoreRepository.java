@@ -1,38 +1,108 @@
 package com.victorlh.gcp.spring.libfirestore;
 
+import com.google.api.core.ApiFunction;
 import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutures;
+import com.google.cloud.firestore.AggregateField;
+import com.google.cloud.firestore.AggregateQuerySnapshot;
+import com.google.cloud.firestore.BulkWriter;
+import com.google.cloud.firestore.BulkWriterOptions;
 import com.google.cloud.firestore.CollectionReference;
 import com.google.cloud.firestore.DocumentReference;
 import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldMask;
+import com.google.cloud.firestore.FieldPath;
 import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Precondition;
 import com.google.cloud.firestore.Query;
 import com.google.cloud.firestore.QueryDocumentSnapshot;
 import com.google.cloud.firestore.QuerySnapshot;
+import com.google.cloud.firestore.SetOptions;
+import com.google.cloud.firestore.WriteBatch;
 import com.google.cloud.firestore.WriteResult;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.victorlh.gcp.spring.libfirestore.anotations.CachedCollection;
+import com.victorlh.gcp.spring.libfirestore.anotations.ReplicatedCollection;
+import com.victorlh.gcp.spring.libfirestore.bulk.BulkWriteOptions;
+import com.victorlh.gcp.spring.libfirestore.bulk.BulkWriteResult;
+import com.victorlh.gcp.spring.libfirestore.bulk.DocumentWriteResult;
+import com.victorlh.gcp.spring.libfirestore.cache.AggregationCache;
+import com.victorlh.gcp.spring.libfirestore.cache.DocumentCache;
+import com.victorlh.gcp.spring.libfirestore.cache.LruDocumentCache;
+import com.victorlh.gcp.spring.libfirestore.mapper.DocumentMapper;
 import com.victorlh.gcp.spring.libfirestore.errors.FirestoreError;
 import com.victorlh.gcp.spring.libfirestore.handlers.SaveDocumentHandler;
+import com.victorlh.gcp.spring.libfirestore.metadata.EntityMetadata;
+import com.victorlh.gcp.spring.libfirestore.metadata.EntityMetadataRegistry;
+import com.victorlh.gcp.spring.libfirestore.metadata.FieldAccessor;
+import com.victorlh.gcp.spring.libfirestore.metrics.RepositoryMetrics;
+import com.victorlh.gcp.spring.libfirestore.replica.CollectionReplica;
+import com.victorlh.gcp.spring.libfirestore.scan.ScanOptions;
+import com.victorlh.gcp.spring.libfirestore.scan.ScanProgress;
 import com.victorlh.gcp.spring.libfirestore.utils.UtilFirestore;
+import io.grpc.Status;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Repository;
 
 import javax.annotation.Nullable;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.validation.constraints.NotNull;
 import java.lang.reflect.ParameterizedType;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 @Slf4j
 @Repository
 public abstract class AbstractFirestoreRepository<T> {
 
+	private static final int DEFAULT_PAGE_LIMIT = 20;
+	private static final int GET_ALL_BATCH_SIZE = 100;
+	private static final int BULK_WRITER_MAX_PENDING_OPS = 500;
+	private static final int DEFAULT_STREAM_CHUNK_SIZE = 500;
+
 	private final Class<T> parameterizedType;
 	private final String collectionName;
+	private final EntityMetadata<T> metadata;
+	private final SaveDocumentHandler saveDocumentHandler;
 	private final Firestore firestore;
+	private Executor executor = MoreExecutors.directExecutor();
+	@Nullable
+	private DocumentCache documentCache;
+	@Nullable
+	private DocumentMapper<T> documentMapper;
+	@Nullable
+	private AggregationCache aggregationCache;
+	private RepositoryMetrics repositoryMetrics = RepositoryMetrics.NOOP;
+	private final Map<String, CollectionReplica<T>> replicas = new ConcurrentHashMap<>();
+	@Nullable
+	private ScheduledExecutorService bulkWriterExecutor;
 
 	@Autowired
 	@SuppressWarnings("unchecked")
@@ -40,7 +110,82 @@ public abstract class AbstractFirestoreRepository<T> {
 		ParameterizedType type = (ParameterizedType) this.getClass().getGenericSuperclass();
 		this.parameterizedType = (Class<T>) type.getActualTypeArguments()[0];
 		this.collectionName = UtilFirestore.getCollectionNameValue(this.parameterizedType);
+		this.metadata = EntityMetadataRegistry.getMetadata(this.parameterizedType);
+		this.saveDocumentHandler = new SaveDocumentHandler();
 		this.firestore = firestore;
+		this.documentMapper = this.metadata.getDocumentMapper();
+
+		CachedCollection cachedCollection = this.parameterizedType.getAnnotation(CachedCollection.class);
+		if (cachedCollection != null) {
+			this.documentCache = new LruDocumentCache(cachedCollection.maxSize(), Duration.ofSeconds(cachedCollection.ttlSeconds()));
+			if (cachedCollection.aggregationTtlSeconds() > 0) {
+				this.aggregationCache = new AggregationCache(cachedCollection.maxSize(), Duration.ofSeconds(cachedCollection.aggregationTtlSeconds()));
+			}
+		}
+	}
+
+	@PostConstruct
+	public void startReplicatedCollection() {
+		if (parameterizedType.isAnnotationPresent(ReplicatedCollection.class)) {
+			CollectionReplica<T> replica = startReplica();
+			log.info("{} replicated in memory, ready: {}", collectionName, replica.isReady());
+		}
+	}
+
+	@PreDestroy
+	public void closeReplicas() {
+		replicas.values().forEach(CollectionReplica::close);
+		replicas.clear();
+	}
+
+	@PreDestroy
+	public synchronized void shutdownBulkWriterExecutor() {
+		if (bulkWriterExecutor != null) {
+			bulkWriterExecutor.shutdown();
+			bulkWriterExecutor = null;
+		}
+	}
+
+	/**
+	 * Arranca (o devuelve si ya existe) una replica en memoria de la coleccion. Mientras este lista,
+	 * findById y findAll de esa coleccion se resuelven en local sin llamadas a Firestore.
+	 * Si la replica existente ha fallado se sustituye por una nueva.
+	 */
+	public CollectionReplica<T> startReplica(String... collectionPathVariables) {
+		CollectionReference collectionReference = getCollectionReference(collectionPathVariables);
+		return replicas.compute(collectionReference.getPath(), (path, current) -> {
+			if (current != null && !current.isFailed()) {
+				return current;
+			}
+			if (current != null) {
+				current.close();
+			}
+			CollectionReplica<T> replica = new CollectionReplica<>(collectionReference, this::toObject);
+			replica.start();
+			return replica;
+		});
+	}
+
+	public void stopReplica(String... collectionPathVariables) {
+		CollectionReference collectionReference = getCollectionReference(collectionPathVariables);
+		CollectionReplica<T> replica = replicas.remove(collectionReference.getPath());
+		if (replica != null) {
+			replica.close();
+		}
+	}
+
+	@Nullable
+	private CollectionReplica<T> getReadyReplica(CollectionReference collectionReference) {
+		if (replicas.isEmpty()) {
+			return null;
+		}
+		CollectionReplica<T> replica = replicas.get(collectionReference.getPath());
+		if (replica != null && replica.isFailed() && replicas.remove(collectionReference.getPath(), replica)) {
+			// Se quita para que startReplica pueda volver a replicar la coleccion
+			replica.close();
+			return null;
+		}
+		return replica != null && replica.isReady() ? replica : null;
 	}
 
 	/**
@@ -50,78 +195,937 @@ public abstract class AbstractFirestoreRepository<T> {
 	 * @return Identificador del documento
 	 */
 	public String save(T model, String... collectionPathVariables) {
+		return save(model, getSaveMode(), collectionPathVariables);
+	}
+
+	/**
+	 * Guarda el documento con el modo de guardado indicado y devuelve el id
+	 *
+	 * @param model    - modelo del documento a guardar
+	 * @param saveMode - estrategia de lectura/escritura
+	 * @return Identificador del documento
+	 */
+	public String save(T model, SaveMode saveMode, String... collectionPathVariables) {
+		return resolveFuture(saveAsync(model, saveMode, collectionPathVariables), "saving");
+	}
+
+	public ApiFuture<String> saveAsync(T model, String... collectionPathVariables) {
+		return saveAsync(model, getSaveMode(), collectionPathVariables);
+	}
+
+	/**
+	 * Guarda el documento sin bloquear el hilo, componiendo la lectura, el handler y la escritura
+	 *
+	 * @param model    - modelo del documento a guardar
+	 * @param saveMode - estrategia de lectura/escritura
+	 * @return Futuro con el identificador del documento
+	 */
+	public ApiFuture<String> saveAsync(T model, SaveMode saveMode, String... collectionPathVariables) {
+		long startNanos = System.nanoTime();
 		CollectionReference collectionReference = getCollectionReference(collectionPathVariables);
-		String documentId = UtilFirestore.getDocumentId(model);
+		String documentId = metadata.getDocumentId(model);
 		DocumentReference document = collectionReference.document(documentId);
 
-		ApiFuture<DocumentSnapshot> documentSnapshotApiFuture = document.get();
-		DocumentSnapshot documentSnapshot = resolveFuture(documentSnapshotApiFuture);
+		ApiFuture<?> writeApiFuture;
+		switch (saveMode) {
+			case BLIND:
+				writeApiFuture = saveBlind(document, model);
+				break;
+			case TRANSACTIONAL:
+				writeApiFuture = saveInTransaction(document, model);
+				break;
+			default:
+				writeApiFuture = saveReadBeforeWrite(document, model);
+		}
+		ApiFuture<String> saveApiFuture = ApiFutures.transform(invalidateCache(List.of(document), writeApiFuture), result -> documentId, MoreExecutors.directExecutor());
+		return record("save", startNanos, saveApiFuture);
+	}
 
-		new SaveDocumentHandler().handle(model, documentSnapshot);
+	private ApiFuture<WriteResult> saveReadBeforeWrite(DocumentReference document, T model) {
+		if (metadata.getCreateAtField() == null) {
+			saveDocumentHandler.handle(model, true);
+			return logSaved(document, set(document, model));
+		}
 
-		ApiFuture<WriteResult> resultApiFuture = document.set(model);
-		try {
-			WriteResult writeResult = resultApiFuture.get();
+		ApiFuture<WriteResult> writeApiFuture = ApiFutures.transformAsync(document.get(), documentSnapshot -> {
+			saveDocumentHandler.handle(model, documentSnapshot);
+			return set(document, model);
+		}, MoreExecutors.directExecutor());
+		return logSaved(document, writeApiFuture);
+	}
+
+	private ApiFuture<WriteResult> saveBlind(DocumentReference document, T model) {
+		FieldAccessor createAtField = metadata.getCreateAtField();
+		if (createAtField == null || createAtField.get(model) != null) {
+			saveDocumentHandler.handle(model, true);
+			return logSaved(document, set(document, model));
+		}
+
+		saveDocumentHandler.handle(model, false);
+		ApiFuture<WriteResult> writeApiFuture = ApiFutures.catchingAsync(create(document, model), Throwable.class, throwable -> {
+			if (!UtilFirestore.isAlreadyExists(throwable)) {
+				return ApiFutures.immediateFailedFuture(throwable);
+			}
+			createAtField.set(model, null);
+			return overwriteKeepingCreateAt(document, model, createAtField);
+		}, MoreExecutors.directExecutor());
+		return logSaved(document, writeApiFuture);
+	}
+
+	/**
+	 * Sobrescribe un documento que ya existe sin tocar su CreateAt: con {@link DocumentMapper} se escriben el resto de campos
+	 * sin leer, con el mapper del cliente se lee solo el CreateAt guardado y se copia al modelo antes de escribirlo
+	 */
+	private ApiFuture<WriteResult> overwriteKeepingCreateAt(DocumentReference document, T model, FieldAccessor createAtField) {
+		if (documentMapper != null) {
+			Map<String, Object> data = documentMapper.toMap(model);
+			data.remove(createAtField.getName());
+			List<FieldPath> fieldPaths = data.keySet().stream().map(FieldPath::of).collect(Collectors.toList());
+			return document.set(data, SetOptions.mergeFieldPaths(fieldPaths));
+		}
+
+		return ApiFutures.transformAsync(document.get(FieldMask.of(createAtField.getName())), documentSnapshot -> {
+			createAtField.set(model, documentSnapshot.get(createAtField.getName(), createAtField.getType()));
+			return set(document, model);
+		}, MoreExecutors.directExecutor());
+	}
+
+	private ApiFuture<Void> saveInTransaction(DocumentReference document, T model) {
+		ApiFuture<Void> transactionApiFuture = firestore.runAsyncTransaction(transaction -> ApiFutures.transform(transaction.get(document), documentSnapshot -> {
+			saveDocumentHandler.handle(model, documentSnapshot);
+			if (documentMapper == null) {
+				transaction.set(document, model);
+			} else {
+				transaction.set(document, documentMapper.toMap(model));
+			}
+			return null;
+		}, MoreExecutors.directExecutor()));
+		return ApiFutures.transform(transactionApiFuture, result -> {
+			log.info("{} saved in transaction", document.getPath());
+			return result;
+		}, MoreExecutors.directExecutor());
+	}
+
+	private ApiFuture<WriteResult> set(DocumentReference document, T model) {
+		return documentMapper == null ? document.set(model) : document.set(documentMapper.toMap(model));
+	}
+
+	private ApiFuture<WriteResult> create(DocumentReference document, T model) {
+		return documentMapper == null ? document.create(model) : document.create(documentMapper.toMap(model));
+	}
+
+	/**
+	 * Datos a escribir del modelo: el Map del {@link DocumentMapper} o el propio modelo para el mapper del cliente
+	 */
+	private Object toData(T model) {
+		return documentMapper == null ? model : documentMapper.toMap(model);
+	}
+
+	private ApiFuture<WriteResult> logSaved(DocumentReference document, ApiFuture<WriteResult> writeApiFuture) {
+		return ApiFutures.transform(writeApiFuture, writeResult -> {
 			log.info("{} saved at {}", document.getPath(), writeResult.getUpdateTime());
-			return documentId;
-		} catch (InterruptedException | ExecutionException e) {
-			String msg = String.format("Error saving %s %s", document.getPath(), e.getMessage());
-			throw new FirestoreError(msg, e);
+			return writeResult;
+		}, MoreExecutors.directExecutor());
+	}
+
+	/**
+	 * Escribe solo los campos indicados del modelo, mas el {@link com.victorlh.gcp.spring.libfirestore.anotations.UpdateAt}
+	 *
+	 * @param model      - modelo del documento a actualizar
+	 * @param fieldPaths - rutas de los campos cambiados, admite rutas con puntos dentro de campos Map
+	 * @return Identificador del documento
+	 */
+	public String update(T model, Collection<String> fieldPaths, String... collectionPathVariables) {
+		return update(model, fieldPaths, getUpdateMode(), collectionPathVariables);
+	}
+
+	public String update(T model, Collection<String> fieldPaths, UpdateMode updateMode, String... collectionPathVariables) {
+		return resolveFuture(updateAsync(model, fieldPaths, updateMode, collectionPathVariables), "updating");
+	}
+
+	public ApiFuture<String> updateAsync(T model, Collection<String> fieldPaths, UpdateMode updateMode, String... collectionPathVariables) {
+		long startNanos = System.nanoTime();
+		DocumentMapper<T> mapper = requireDocumentMapper();
+		CollectionReference collectionReference = getCollectionReference(collectionPathVariables);
+		String documentId = metadata.getDocumentId(model);
+		DocumentReference document = collectionReference.document(documentId);
+
+		List<String> changedFields = new ArrayList<>(fieldPaths);
+		if (changedFields.isEmpty()) {
+			return ApiFutures.immediateFuture(documentId);
+		}
+		saveDocumentHandler.handle(model, true);
+		addAuditField(changedFields, metadata.getUpdateAtField());
+		ApiFuture<WriteResult> writeApiFuture = partialWrite(document, mapper.toMap(model), changedFields, updateMode);
+		ApiFuture<String> updateApiFuture = ApiFutures.transform(invalidateCache(List.of(document), writeApiFuture), result -> documentId, MoreExecutors.directExecutor());
+		return record("update", startNanos, updateApiFuture);
+	}
+
+	/**
+	 * Lee el documento, lo compara con el modelo y escribe solo los campos que han cambiado.
+	 * Si no ha cambiado ninguno no se escribe nada y no se actualiza el UpdateAt.
+	 * La escritura solo se aplica si el documento no ha cambiado desde la lectura; si otro lo ha escrito entre medias
+	 * falla con FAILED_PRECONDITION (o ALREADY_EXISTS si se ha creado) en vez de pisar su cambio.
+	 *
+	 * @param model - modelo del documento a guardar
+	 * @return Identificador del documento
+	 */
+	public String saveChanges(T model, String... collectionPathVariables) {
+		return saveChanges(model, getUpdateMode(), collectionPathVariables);
+	}
+
+	public String saveChanges(T model, UpdateMode updateMode, String... collectionPathVariables) {
+		return resolveFuture(saveChangesAsync(model, updateMode, collectionPathVariables), "saving");
+	}
+
+	public ApiFuture<String> saveChangesAsync(T model, String... collectionPathVariables) {
+		return saveChangesAsync(model, getUpdateMode(), collectionPathVariables);
+	}
+
+	public ApiFuture<String> saveChangesAsync(T model, UpdateMode updateMode, String... collectionPathVariables) {
+		long startNanos = System.nanoTime();
+		DocumentMapper<T> mapper = requireDocumentMapper();
+		CollectionReference collectionReference = getCollectionReference(collectionPathVariables);
+		String documentId = metadata.getDocumentId(model);
+		DocumentReference document = collectionReference.document(documentId);
+
+		ApiFuture<WriteResult> writeApiFuture = ApiFutures.transformAsync(document.get(), documentSnapshot -> {
+			Map<String, Object> currentData = documentSnapshot.exists() ? mapper.toMap(mapper.toObject(documentSnapshot)) : Collections.emptyMap();
+			List<String> changedFields = getChangedFields(currentData, mapper.toMap(model));
+			if (changedFields.isEmpty()) {
+				log.debug("{} without changes", document.getPath());
+				return ApiFutures.immediateFuture(null);
+			}
+
+			saveDocumentHandler.handle(model, documentSnapshot);
+			addAuditField(changedFields, metadata.getUpdateAtField());
+			if (!documentSnapshot.exists()) {
+				addAuditField(changedFields, metadata.getCreateAtField());
+			}
+			return conditionalWrite(document, documentSnapshot, mapper.toMap(model), changedFields, updateMode);
+		}, MoreExecutors.directExecutor());
+		ApiFuture<String> saveApiFuture = ApiFutures.transform(invalidateCache(List.of(document), writeApiFuture), result -> documentId, MoreExecutors.directExecutor());
+		return record("saveChanges", startNanos, saveApiFuture);
+	}
+
+	/**
+	 * Campos de primer nivel del modelo con distinto valor que en el documento, sin los de auditoria
+	 */
+	private List<String> getChangedFields(Map<String, Object> currentData, Map<String, Object> modelData) {
+		FieldAccessor createAtField = metadata.getCreateAtField();
+		FieldAccessor updateAtField = metadata.getUpdateAtField();
+		List<String> changedFields = new ArrayList<>();
+		for (Map.Entry<String, Object> entry : modelData.entrySet()) {
+			String name = entry.getKey();
+			if (createAtField != null && name.equals(createAtField.getName()) || updateAtField != null && name.equals(updateAtField.getName())) {
+				continue;
+			}
+			if (!currentData.containsKey(name) || !Objects.equals(entry.getValue(), currentData.get(name))) {
+				changedFields.add(name);
+			}
+		}
+		return changedFields;
+	}
+
+	private static void addAuditField(List<String> changedFields, @Nullable FieldAccessor auditField) {
+		if (auditField != null && !changedFields.contains(auditField.getName())) {
+			changedFields.add(auditField.getName());
+		}
+	}
+
+	private ApiFuture<WriteResult> partialWrite(DocumentReference document, Map<String, Object> data, List<String> fieldPaths, UpdateMode updateMode) {
+		ApiFuture<WriteResult> writeApiFuture;
+		if (updateMode == UpdateMode.MERGE) {
+			writeApiFuture = document.set(data, SetOptions.mergeFields(fieldPaths));
+		} else {
+			writeApiFuture = document.update(getFieldValues(data, fieldPaths));
+		}
+		return logUpdated(document, fieldPaths, writeApiFuture);
+	}
+
+	/**
+	 * Escribe los campos cambiados con la condicion de que el documento siga como se leyo. set no admite precondiciones,
+	 * asi que en MERGE un documento que existe se actualiza (mismo resultado que mergeFields) y uno nuevo se crea
+	 */
+	private ApiFuture<WriteResult> conditionalWrite(DocumentReference document, DocumentSnapshot documentSnapshot, Map<String, Object> data,
+													List<String> fieldPaths, UpdateMode updateMode) {
+		Map<String, Object> fieldValues = getFieldValues(data, fieldPaths);
+		ApiFuture<WriteResult> writeApiFuture;
+		if (documentSnapshot.exists()) {
+			writeApiFuture = document.update(fieldValues, Precondition.updatedAt(documentSnapshot.getUpdateTime()));
+		} else if (updateMode == UpdateMode.MERGE) {
+			writeApiFuture = document.create(fieldValues);
+		} else {
+			writeApiFuture = document.update(fieldValues);
+		}
+		return logUpdated(document, fieldPaths, writeApiFuture);
+	}
+
+	private Map<String, Object> getFieldValues(Map<String, Object> data, List<String> fieldPaths) {
+		Map<String, Object> fieldValues = new LinkedHashMap<>();
+		for (String fieldPath : fieldPaths) {
+			fieldValues.put(fieldPath, getFieldValue(data, fieldPath));
+		}
+		return fieldValues;
+	}
+
+	private static ApiFuture<WriteResult> logUpdated(DocumentReference document, List<String> fieldPaths, ApiFuture<WriteResult> writeApiFuture) {
+		return ApiFutures.transform(writeApiFuture, writeResult -> {
+			log.info("{} updated {} at {}", document.getPath(), fieldPaths, writeResult.getUpdateTime());
+			return writeResult;
+		}, MoreExecutors.directExecutor());
+	}
+
+	@Nullable
+	private Object getFieldValue(Map<String, Object> data, String fieldPath) {
+		Object value = data;
+		for (String segment : fieldPath.split("\\.")) {
+			if (!(value instanceof Map) || !((Map<?, ?>) value).containsKey(segment)) {
+				String error = String.format("El campo %s no existe en %s", fieldPath, parameterizedType.getName());
+				throw new IllegalArgumentException(error);
+			}
+			value = ((Map<?, ?>) value).get(segment);
+		}
+		return value;
+	}
+
+	/**
+	 * Las actualizaciones parciales necesitan los datos del modelo como Map, que solo da el {@link DocumentMapper}
+	 */
+	private DocumentMapper<T> requireDocumentMapper() {
+		DocumentMapper<T> mapper = documentMapper;
+		if (mapper == null) {
+			String error = String.format("%s no tiene DocumentMapper, asigna uno con setDocumentMapper para usar actualizaciones parciales", parameterizedType.getName());
+			throw new IllegalStateException(error);
 		}
+		return mapper;
 	}
 
 	public void delete(T model, String... collectionPathVariables) {
+		resolveFuture(deleteAsync(model, collectionPathVariables), "deleting");
+	}
+
+	public ApiFuture<WriteResult> deleteAsync(T model, String... collectionPathVariables) {
+		long startNanos = System.nanoTime();
 		CollectionReference collectionReference = getCollectionReference(collectionPathVariables);
-		String documentId = UtilFirestore.getDocumentId(model);
+		String documentId = metadata.getDocumentId(model);
 		DocumentReference documentReference = collectionReference.document(documentId);
-		ApiFuture<WriteResult> resultApiFuture = documentReference.delete();
+		ApiFuture<WriteResult> deleteApiFuture = ApiFutures.transform(documentReference.delete(), writeResult -> {
+			log.info("{} deleted at{}", documentReference.getPath(), writeResult.getUpdateTime());
+			return writeResult;
+		}, MoreExecutors.directExecutor());
+		return record("delete", startNanos, invalidateCache(List.of(documentReference), deleteApiFuture));
+	}
+
+	public BulkWriteResult<T> saveAll(Collection<T> models, String... collectionPathVariables) {
+		return saveAll(models, BulkWriteOptions.DEFAULT, collectionPathVariables);
+	}
+
+	/**
+	 * Guarda todos los documentos con un BulkWriter, o con un WriteBatch si se pide atomicidad.
+	 * Si el modelo tiene CreateAt se comprueba en lote que documentos existen ya antes de escribir.
+	 *
+	 * @param models       - modelos de los documentos a guardar
+	 * @param writeOptions - atomicidad, limite de operaciones por segundo y reintentos
+	 * @return Resultado por documento, en el orden de entrada
+	 */
+	public BulkWriteResult<T> saveAll(Collection<T> models, BulkWriteOptions writeOptions, String... collectionPathVariables) {
+		return resolveFuture(saveAllAsync(models, writeOptions, collectionPathVariables), "saving");
+	}
+
+	public ApiFuture<BulkWriteResult<T>> saveAllAsync(Collection<T> models, BulkWriteOptions writeOptions, String... collectionPathVariables) {
+		long startNanos = System.nanoTime();
+		CollectionReference collectionReference = getCollectionReference(collectionPathVariables);
+		List<T> modelList = new ArrayList<>(models);
+		List<String> documentIds = new ArrayList<>(modelList.size());
+		List<DocumentReference> documentReferences = new ArrayList<>(modelList.size());
+		for (T model : modelList) {
+			String documentId = metadata.getDocumentId(model);
+			documentIds.add(documentId);
+			documentReferences.add(collectionReference.document(documentId));
+		}
+
+		FieldAccessor createAtField = metadata.getCreateAtField();
+		ApiFuture<List<Boolean>> existsApiFuture;
+		if (createAtField == null) {
+			existsApiFuture = ApiFutures.immediateFuture(Collections.nCopies(modelList.size(), Boolean.TRUE));
+		} else {
+			FieldMask fieldMask = FieldMask.of(createAtField.getName());
+			existsApiFuture = getAllAsync(documentReferences, fieldMask, snapshots -> snapshots.stream()
+					.map(DocumentSnapshot::exists)
+					.collect(Collectors.toList()), MoreExecutors.directExecutor());
+		}
+
+		ApiFuture<BulkWriteResult<T>> writeApiFuture = ApiFutures.transformAsync(existsApiFuture, exists -> {
+			for (int i = 0; i < modelList.size(); i++) {
+				saveDocumentHandler.handle(modelList.get(i), exists.get(i));
+			}
+			return bulkWrite(documentIds, modelList, writeOptions,
+					(bulkWriter, i) -> bulkWriter.set(documentReferences.get(i), toData(modelList.get(i))),
+					(writeBatch, i) -> writeBatch.set(documentReferences.get(i), toData(modelList.get(i))));
+		}, MoreExecutors.directExecutor());
+		return record("saveAll", startNanos, invalidateCache(documentReferences, writeApiFuture));
+	}
+
+	public BulkWriteResult<T> deleteAll(Collection<T> models, String... collectionPathVariables) {
+		return deleteAll(models, BulkWriteOptions.DEFAULT, collectionPathVariables);
+	}
+
+	public BulkWriteResult<T> deleteAll(Collection<T> models, BulkWriteOptions writeOptions, String... collectionPathVariables) {
+		return resolveFuture(deleteAllAsync(models, writeOptions, collectionPathVariables), "deleting");
+	}
+
+	public ApiFuture<BulkWriteResult<T>> deleteAllAsync(Collection<T> models, BulkWriteOptions writeOptions, String... collectionPathVariables) {
+		long startNanos = System.nanoTime();
+		CollectionReference collectionReference = getCollectionReference(collectionPathVariables);
+		List<T> modelList = new ArrayList<>(models);
+		List<String> documentIds = modelList.stream()
+				.map(metadata::getDocumentId)
+				.collect(Collectors.toList());
+		List<DocumentReference> documentReferences = documentIds.stream()
+				.map(collectionReference::document)
+				.collect(Collectors.toList());
+		ApiFuture<BulkWriteResult<T>> writeApiFuture = bulkWrite(documentIds, modelList, writeOptions,
+				(bulkWriter, i) -> bulkWriter.delete(documentReferences.get(i)),
+				(writeBatch, i) -> writeBatch.delete(documentReferences.get(i)));
+		return record("deleteAll", startNanos, invalidateCache(documentReferences, writeApiFuture));
+	}
+
+	private ApiFuture<BulkWriteResult<T>> bulkWrite(List<String> documentIds, List<T> models, BulkWriteOptions writeOptions,
+													BiFunction<BulkWriter, Integer, ApiFuture<WriteResult>> bulkOperation,
+													BiConsumer<WriteBatch, Integer> batchOperation) {
+		if (writeOptions.isAtomic()) {
+			return batchWrite(documentIds, models, batchOperation);
+		}
+
+		BulkWriter bulkWriter = firestore.bulkWriter(toBulkWriterOptions(writeOptions));
+		if (writeOptions.getMaxAttempts() != null) {
+			int maxAttempts = writeOptions.getMaxAttempts();
+			bulkWriter.addWriteErrorListener(error -> error.getFailedAttempts() < maxAttempts && isRetryable(error.getStatus()));
+		}
+
+		List<DocumentWriteResult<T>> results = new ArrayList<>(models.size());
+		ApiFuture<List<DocumentWriteResult<T>>> writeApiFuture = bulkWriteFrom(bulkWriter, 0, documentIds, models, bulkOperation, results);
+		// close() espera al flush, asi que solo se cierra cuando un flush sin operaciones pendientes ya ha terminado
+		writeApiFuture.addListener(() -> bulkWriter.flush().addListener(() -> closeBulkWriter(bulkWriter), MoreExecutors.directExecutor()),
+				MoreExecutors.directExecutor());
+		return ApiFutures.transform(writeApiFuture, ignored -> {
+			BulkWriteResult<T> bulkWriteResult = new BulkWriteResult<>(results);
+			log.info("{} bulk write of {} documents, {} failed", collectionName, results.size(), results.size() - bulkWriteResult.getSuccessCount());
+			return bulkWriteResult;
+		}, MoreExecutors.directExecutor());
+	}
+
+	/**
+	 * Encola las operaciones por tramos de {@value #BULK_WRITER_MAX_PENDING_OPS}: el BulkWriter retiene las que pasan de ese numero
+	 * de pendientes y flush() no las envia, por lo que el ultimo lote incompleto no se escribiria nunca.
+	 */
+	private ApiFuture<List<DocumentWriteResult<T>>> bulkWriteFrom(BulkWriter bulkWriter, int from, List<String> documentIds, List<T> models,
+																  BiFunction<BulkWriter, Integer, ApiFuture<WriteResult>> bulkOperation,
+																  List<DocumentWriteResult<T>> results) {
+		int to = Math.min(from + BULK_WRITER_MAX_PENDING_OPS, models.size());
+		List<ApiFuture<DocumentWriteResult<T>>> resultApiFutures = new ArrayList<>(to - from);
+		for (int i = from; i < to; i++) {
+			String documentId = documentIds.get(i);
+			T model = models.get(i);
+			ApiFuture<DocumentWriteResult<T>> resultApiFuture = ApiFutures.transform(bulkOperation.apply(bulkWriter, i),
+					writeResult -> DocumentWriteResult.success(documentId, model, writeResult), MoreExecutors.directExecutor());
+			resultApiFutures.add(ApiFutures.catching(resultApiFuture, Throwable.class,
+					error -> DocumentWriteResult.failure(documentId, model, error), MoreExecutors.directExecutor()));
+		}
+		// flush envia el ultimo lote pendiente; close() bloquearia hasta que terminen todas las escrituras
+		bulkWriter.flush();
+
+		return ApiFutures.transformAsync(ApiFutures.allAsList(resultApiFutures), sliceResults -> {
+			results.addAll(sliceResults);
+			if (to == models.size()) {
+				return ApiFutures.immediateFuture(results);
+			}
+			return bulkWriteFrom(bulkWriter, to, documentIds, models, bulkOperation, results);
+		}, MoreExecutors.directExecutor());
+	}
+
+	private ApiFuture<BulkWriteResult<T>> batchWrite(List<String> documentIds, List<T> models, BiConsumer<WriteBatch, Integer> batchOperation) {
+		if (models.size() > BulkWriteOptions.MAX_ATOMIC_WRITES) {
+			String error = String.format("Una escritura atomica admite como maximo %d documentos", BulkWriteOptions.MAX_ATOMIC_WRITES);
+			throw new IllegalArgumentException(error);
+		}
+
+		WriteBatch writeBatch = firestore.batch();
+		for (int i = 0; i < models.size(); i++) {
+			batchOperation.accept(writeBatch, i);
+		}
+
+		ApiFuture<BulkWriteResult<T>> resultApiFuture = ApiFutures.transform(writeBatch.commit(), writeResults -> {
+			List<DocumentWriteResult<T>> results = new ArrayList<>(models.size());
+			for (int i = 0; i < models.size(); i++) {
+				results.add(DocumentWriteResult.success(documentIds.get(i), models.get(i), writeResults.get(i)));
+			}
+			log.info("{} atomic write of {} documents", collectionName, results.size());
+			return new BulkWriteResult<>(results);
+		}, MoreExecutors.directExecutor());
+
+		return ApiFutures.catching(resultApiFuture, Throwable.class, error -> {
+			List<DocumentWriteResult<T>> results = new ArrayList<>(models.size());
+			for (int i = 0; i < models.size(); i++) {
+				results.add(DocumentWriteResult.failure(documentIds.get(i), models.get(i), error));
+			}
+			return new BulkWriteResult<>(results);
+		}, MoreExecutors.directExecutor());
+	}
+
+	private static void closeBulkWriter(BulkWriter bulkWriter) {
 		try {
-			log.info("{} deleted at{}", documentReference.getPath(), resultApiFuture.get().getUpdateTime());
-		} catch (InterruptedException | ExecutionException e) {
-			String msg = String.format("Error saving %s=%s %s", collectionReference, documentId, e.getMessage());
-			throw new FirestoreError(msg, e);
+			bulkWriter.close();
+		} catch (ExecutionException e) {
+			log.warn("Error closing bulk writer, {}", e.getMessage());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Sin executor cada BulkWriter crea su propio hilo programado (no daemon) que no se libera nunca,
+	 * asi que todos los BulkWriter del repositorio comparten uno
+	 */
+	private synchronized ScheduledExecutorService getBulkWriterExecutor() {
+		if (bulkWriterExecutor == null) {
+			CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("firestore-bulk-" + collectionName + "-");
+			threadFactory.setDaemon(true);
+			bulkWriterExecutor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+		}
+		return bulkWriterExecutor;
+	}
+
+	private BulkWriterOptions toBulkWriterOptions(BulkWriteOptions writeOptions) {
+		BulkWriterOptions.Builder builder = BulkWriterOptions.builder()
+				.setExecutor(getBulkWriterExecutor());
+		if (writeOptions.getThrottlingEnabled() != null) {
+			builder.setThrottlingEnabled(writeOptions.getThrottlingEnabled());
+		}
+		if (writeOptions.getInitialOpsPerSecond() != null) {
+			builder.setInitialOpsPerSecond(writeOptions.getInitialOpsPerSecond());
+		}
+		if (writeOptions.getMaxOpsPerSecond() != null) {
+			builder.setMaxOpsPerSecond(writeOptions.getMaxOpsPerSecond());
+		}
+		return builder.build();
+	}
+
+	private static boolean isRetryable(Status status) {
+		switch (status.getCode()) {
+			case ABORTED:
+			case UNAVAILABLE:
+			case RESOURCE_EXHAUSTED:
+			case DEADLINE_EXCEEDED:
+			case INTERNAL:
+				return true;
+			default:
+				return false;
 		}
 	}
 
 	public void recursiveDelete(String documentId, String... collectionPathVariables) {
+		resolveFuture(recursiveDeleteAsync(documentId, collectionPathVariables), "deleting");
+	}
+
+	public ApiFuture<Void> recursiveDeleteAsync(String documentId, String... collectionPathVariables) {
+		long startNanos = System.nanoTime();
 		CollectionReference collectionReference = getCollectionReference(collectionPathVariables);
 		DocumentReference documentReference = collectionReference.document(documentId);
-		ApiFuture<Void> voidApiFuture = firestore.recursiveDelete(documentReference);
-		try {
-			log.info("{} recursive deleted at{}", documentReference.getPath(), voidApiFuture.get());
-		} catch (InterruptedException | ExecutionException e) {
-			String msg = String.format("Error saving %s=%s %s", collectionName, documentId, e.getMessage());
-			throw new FirestoreError(msg, e);
-		}
+		ApiFuture<Void> deleteApiFuture = ApiFutures.transform(firestore.recursiveDelete(documentReference), result -> {
+			log.info("{} recursive deleted", documentReference.getPath());
+			return result;
+		}, MoreExecutors.directExecutor());
+		return record("recursiveDelete", startNanos, invalidateCache(List.of(documentReference), deleteApiFuture));
 	}
 
 	public List<T> findAll(String... collectionPathVariables) {
+		long startNanos = System.nanoTime();
 		CollectionReference collectionReference = getCollectionReference(collectionPathVariables);
+		CollectionReplica<T> replica = getReadyReplica(collectionReference);
+		if (replica != null) {
+			return replica.findAll();
+		}
 		ApiFuture<QuerySnapshot> querySnapshotApiFuture = collectionReference.get();
-		return extractQuery(querySnapshotApiFuture);
+		return extractQuery(record("findAll", startNanos, querySnapshotApiFuture));
+	}
+
+	public ApiFuture<List<T>> findAllAsync(String... collectionPathVariables) {
+		long startNanos = System.nanoTime();
+		CollectionReference collectionReference = getCollectionReference(collectionPathVariables);
+		CollectionReplica<T> replica = getReadyReplica(collectionReference);
+		if (replica != null) {
+			return ApiFutures.immediateFuture(replica.findAll());
+		}
+		return extractQueryAsync(record("findAll", startNanos, collectionReference.get()));
+	}
+
+	/**
+	 * Lee toda la coleccion descargando solo los campos de la proyeccion. No usa la replica en memoria.
+	 *
+	 * @param projection - campos a leer y tipo al que se convierte cada documento
+	 */
+	public <P> List<P> findAll(@NotNull Projection<P> projection, String... collectionPathVariables) {
+		return resolveFuture(findAllAsync(projection, collectionPathVariables));
+	}
+
+	public <P> ApiFuture<List<P>> findAllAsync(@NotNull Projection<P> projection, String... collectionPathVariables) {
+		long startNanos = System.nanoTime();
+		CollectionReference collectionReference = getCollectionReference(collectionPathVariables);
+		return extractQueryAsync(record("findAll", startNanos, projection.select(collectionReference).get()), projection);
+	}
+
+	/**
+	 * Recorre toda la coleccion de forma perezosa, pidiendo los documentos en bloques segun se consumen
+	 *
+	 * @return Stream de modelos, cada bloque se lee de forma bloqueante al llegar a el
+	 */
+	public Stream<T> streamAll(String... collectionPathVariables) {
+		CollectionReference collectionReference = getCollectionReference(collectionPathVariables);
+		return stream(collectionReference, DEFAULT_STREAM_CHUNK_SIZE);
+	}
+
+	/**
+	 * Recorre la consulta de forma perezosa en bloques de chunkSize documentos, en el orden de la consulta.
+	 * El limit de la consulta es el total de documentos del stream y no el tamaño de bloque. No admite limitToLast.
+	 */
+	public Stream<T> stream(@NotNull Query query, int chunkSize) {
+		Iterator<QueryDocumentSnapshot> iterator = new ChunkedQueryIterator(query, chunkSize);
+		Spliterator<QueryDocumentSnapshot> spliterator = Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL);
+		return StreamSupport.stream(spliterator, false)
+				.map(this::toObject)
+				.filter(Objects::nonNull);
+	}
+
+	/**
+	 * Recorre toda la coleccion en paralelo, dividida en particiones de Firestore que se leen en un pool acotado
+	 *
+	 * @param callback - se llama por cada documento desde varios hilos a la vez, tiene que ser thread-safe
+	 * @return Progreso final con el numero de documentos y el rendimiento
+	 */
+	public ScanProgress parallelScan(@NotNull Consumer<T> callback, String... collectionPathVariables) {
+		return parallelScan(callback, ScanOptions.DEFAULT, collectionPathVariables);
+	}
+
+	/**
+	 * @param scanOptions - hilos, particiones, tamaño de bloque y listener de progreso
+	 */
+	public ScanProgress parallelScan(@NotNull Consumer<T> callback, @NotNull ScanOptions scanOptions, String... collectionPathVariables) {
+		CollectionReference collectionReference = getCollectionReference(collectionPathVariables);
+		return new PartitionedScan<>(collectionReference, this::toObject, scanOptions).run(callback);
 	}
 
 	public List<T> findAll(CollectionPageRequest collectionPageRequest, String... collectionPathVariables) {
 		CollectionReference collectionReference = getCollectionReference(collectionPathVariables);
 		String orderByName = getOrderByName();
-		return paginate(collectionReference, orderByName, collectionPageRequest, 20);
+		return paginate(collectionReference, orderByName, collectionPageRequest, DEFAULT_PAGE_LIMIT);
+	}
+
+	public ApiFuture<List<T>> findAllAsync(CollectionPageRequest collectionPageRequest, String... collectionPathVariables) {
+		CollectionReference collectionReference = getCollectionReference(collectionPathVariables);
+		String orderByName = getOrderByName();
+		return paginateAsync(collectionReference, orderByName, collectionPageRequest, DEFAULT_PAGE_LIMIT);
+	}
+
+	public <P> List<P> findAll(@NotNull Projection<P> projection, CollectionPageRequest collectionPageRequest, String... collectionPathVariables) {
+		CollectionReference collectionReference = getCollectionReference(collectionPathVariables);
+		return paginate(collectionReference, getOrderByName(), collectionPageRequest, DEFAULT_PAGE_LIMIT, projection);
+	}
+
+	public <P> ApiFuture<List<P>> findAllAsync(@NotNull Projection<P> projection, CollectionPageRequest collectionPageRequest, String... collectionPathVariables) {
+		CollectionReference collectionReference = getCollectionReference(collectionPathVariables);
+		return paginateAsync(collectionReference, getOrderByName(), collectionPageRequest, DEFAULT_PAGE_LIMIT, projection);
+	}
+
+	/**
+	 * Numero de documentos de la coleccion, con una consulta de agregacion en el servidor.
+	 */
+	public long count(String... collectionPathVariables) {
+		return resolveFuture(countAsync(collectionPathVariables));
+	}
+
+	public ApiFuture<Long> countAsync(String... collectionPathVariables) {
+		return countAsync(getCollectionReference(collectionPathVariables));
+	}
+
+	public long count(@NotNull Query query) {
+		return resolveFuture(countAsync(query));
+	}
+
+	public ApiFuture<Long> countAsync(@NotNull Query query) {
+		return aggregateAsync("count", query, AggregateField.count(), AggregateQuerySnapshot::getCount);
+	}
+
+	/**
+	 * Suma de un campo numerico, calculada en el servidor. Los valores no numericos se ignoran.
+	 *
+	 * @param field - ruta del campo
+	 * @return Long si todos los valores son enteros y la suma no desborda, si no Double
+	 */
+	public Number sum(@NotNull String field, String... collectionPathVariables) {
+		return resolveFuture(sumAsync(field, collectionPathVariables));
+	}
+
+	public ApiFuture<Number> sumAsync(@NotNull String field, String... collectionPathVariables) {
+		return sumAsync(getCollectionReference(collectionPathVariables), field);
+	}
+
+	public Number sum(@NotNull Query query, @NotNull String field) {
+		return resolveFuture(sumAsync(query, field));
+	}
+
+	public ApiFuture<Number> sumAsync(@NotNull Query query, @NotNull String field) {
+		AggregateField sumField = AggregateField.sum(field);
+		return aggregateAsync("sum", query, sumField, snapshot -> (Number) snapshot.get(sumField));
+	}
+
+	/**
+	 * Media de un campo numerico, calculada en el servidor. Los valores no numericos se ignoran.
+	 *
+	 * @param field - ruta del campo
+	 * @return Media o null si ningun documento tiene un valor numerico en el campo
+	 */
+	@Nullable
+	public Double average(@NotNull String field, String... collectionPathVariables) {
+		return resolveFuture(averageAsync(field, collectionPathVariables));
+	}
+
+	public ApiFuture<Double> averageAsync(@NotNull String field, String... collectionPathVariables) {
+		return averageAsync(getCollectionReference(collectionPathVariables), field);
+	}
+
+	@Nullable
+	public Double average(@NotNull Query query, @NotNull String field) {
+		return resolveFuture(averageAsync(query, field));
+	}
+
+	public ApiFuture<Double> averageAsync(@NotNull Query query, @NotNull String field) {
+		AggregateField averageField = AggregateField.average(field);
+		return aggregateAsync("average", query, averageField, snapshot -> snapshot.getDouble(averageField));
+	}
+
+	/**
+	 * Lanza la consulta de agregacion en el servidor, que solo devuelve el resultado y no los documentos.
+	 */
+	@SuppressWarnings("unchecked")
+	private <R> ApiFuture<R> aggregateAsync(String operation, Query query, AggregateField aggregateField, Function<AggregateQuerySnapshot, R> result) {
+		long startNanos = System.nanoTime();
+		AggregationCache cache = aggregationCache;
+		List<Object> cacheKey = Arrays.asList(operation, aggregateField, query);
+		if (cache != null) {
+			Object cachedResult = cache.get(cacheKey);
+			if (cachedResult != null) {
+				return ApiFutures.immediateFuture((R) cachedResult);
+			}
+		}
+
+		long cacheVersion = cache == null ? 0 : cache.getVersion();
+		ApiFuture<R> aggregateApiFuture = ApiFutures.transform(query.aggregate(aggregateField).get(), snapshot -> {
+			R value = result.apply(snapshot);
+			if (cache != null && value != null) {
+				cache.put(cacheKey, value, cacheVersion);
+			}
+			return value;
+		}, MoreExecutors.directExecutor());
+		return record(operation, startNanos, aggregateApiFuture);
 	}
 
 	public Optional<T> findById(String documentId, String... collectionPathVariables) {
 		CollectionReference collectionReference = getCollectionReference(collectionPathVariables);
+		CollectionReplica<T> replica = getReadyReplica(collectionReference);
+		if (replica != null) {
+			return replica.findById(documentId);
+		}
 		DocumentReference documentReference = collectionReference.document(documentId);
-		ApiFuture<DocumentSnapshot> documentSnapshotApiFuture = documentReference.get();
-		DocumentSnapshot documentSnapshot = resolveFuture(documentSnapshotApiFuture);
-		return Optional.ofNullable(toObject(documentSnapshot));
+		return findByReference(documentReference);
+	}
+
+	public ApiFuture<Optional<T>> findByIdAsync(String documentId, String... collectionPathVariables) {
+		CollectionReference collectionReference = getCollectionReference(collectionPathVariables);
+		CollectionReplica<T> replica = getReadyReplica(collectionReference);
+		if (replica != null) {
+			return ApiFutures.immediateFuture(replica.findById(documentId));
+		}
+		DocumentReference documentReference = collectionReference.document(documentId);
+		return findByReferenceAsync(documentReference);
 	}
 
 	public Optional<T> findByReference(DocumentReference documentReference) {
-		ApiFuture<DocumentSnapshot> documentSnapshotApiFuture = documentReference.get();
+		ApiFuture<DocumentSnapshot> documentSnapshotApiFuture = getDocumentSnapshot(documentReference);
 		DocumentSnapshot documentSnapshot = resolveFuture(documentSnapshotApiFuture);
 		return Optional.ofNullable(toObject(documentSnapshot));
 	}
 
+	public ApiFuture<Optional<T>> findByReferenceAsync(DocumentReference documentReference) {
+		return ApiFutures.transform(getDocumentSnapshot(documentReference), documentSnapshot -> Optional.ofNullable(toObject(documentSnapshot)), executor);
+	}
+
+	private ApiFuture<DocumentSnapshot> getDocumentSnapshot(DocumentReference documentReference) {
+		long startNanos = System.nanoTime();
+		DocumentCache cache = documentCache;
+		if (cache == null) {
+			return record("findById", startNanos, documentReference.get());
+		}
+
+		String documentPath = documentReference.getPath();
+		DocumentSnapshot cachedSnapshot = cache.get(documentPath);
+		if (cachedSnapshot != null) {
+			return ApiFutures.immediateFuture(cachedSnapshot);
+		}
+		long version = cache.getVersion(documentPath);
+		return record("findById", startNanos, ApiFutures.transform(documentReference.get(), documentSnapshot -> {
+			cache.put(documentPath, documentSnapshot, version);
+			return documentSnapshot;
+		}, MoreExecutors.directExecutor()));
+	}
+
+	/**
+	 * Recupera varios documentos por id con {@link Firestore#getAll}, en lotes lanzados en paralelo
+	 *
+	 * @param documentIds - identificadores de los documentos
+	 * @return Lista con el mismo orden que los ids de entrada, con Optional vacio para los documentos que no existen
+	 */
+	public List<Optional<T>> findAllById(Collection<String> documentIds, String... collectionPathVariables) {
+		return resolveFuture(findAllByIdAsync(documentIds, collectionPathVariables));
+	}
+
+	public ApiFuture<List<Optional<T>>> findAllByIdAsync(Collection<String> documentIds, String... collectionPathVariables) {
+		CollectionReference collectionReference = getCollectionReference(collectionPathVariables);
+		List<DocumentReference> documentReferences = documentIds.stream()
+				.map(collectionReference::document)
+				.collect(Collectors.toList());
+		return findAllByReferenceAsync(documentReferences);
+	}
+
+	/**
+	 * Recupera varios documentos por referencia con {@link Firestore#getAll}, en lotes lanzados en paralelo
+	 *
+	 * @param documentReferences - referencias de los documentos
+	 * @return Lista con el mismo orden que las referencias de entrada, con Optional vacio para los documentos que no existen
+	 */
+	public List<Optional<T>> findAllByReference(Collection<DocumentReference> documentReferences) {
+		return resolveFuture(findAllByReferenceAsync(documentReferences));
+	}
+
+	public ApiFuture<List<Optional<T>>> findAllByReferenceAsync(Collection<DocumentReference> documentReferences) {
+		long startNanos = System.nanoTime();
+		DocumentCache cache = documentCache;
+		if (cache == null) {
+			return record("findAllById", startNanos, getAllAsync(new ArrayList<>(documentReferences), null, this::toOptionals, executor));
+		}
+
+		List<DocumentSnapshot> snapshots = new ArrayList<>(documentReferences.size());
+		List<DocumentReference> missingReferences = new ArrayList<>();
+		Map<String, Long> missingVersions = new HashMap<>();
+		for (DocumentReference documentReference : documentReferences) {
+			DocumentSnapshot cachedSnapshot = cache.get(documentReference.getPath());
+			snapshots.add(cachedSnapshot);
+			if (cachedSnapshot == null) {
+				missingReferences.add(documentReference);
+				missingVersions.put(documentReference.getPath(), cache.getVersion(documentReference.getPath()));
+			}
+		}
+
+		ApiFuture<List<DocumentSnapshot>> missingApiFuture = getAllAsync(missingReferences, null, batch -> {
+			for (DocumentSnapshot documentSnapshot : batch) {
+				String documentPath = documentSnapshot.getReference().getPath();
+				cache.put(documentPath, documentSnapshot, missingVersions.get(documentPath));
+			}
+			return batch;
+		}, MoreExecutors.directExecutor());
+		return record("findAllById", startNanos, ApiFutures.transform(missingApiFuture, loadedSnapshots -> {
+			Iterator<DocumentSnapshot> loaded = loadedSnapshots.iterator();
+			for (int i = 0; i < snapshots.size(); i++) {
+				if (snapshots.get(i) == null) {
+					snapshots.set(i, loaded.next());
+				}
+			}
+			return toOptionals(snapshots);
+		}, executor));
+	}
+
+	private <Z> ApiFuture<Z> invalidateCache(List<DocumentReference> documentReferences, ApiFuture<Z> writeApiFuture) {
+		DocumentCache cache = documentCache;
+		AggregationCache aggregations = aggregationCache;
+		if (cache == null && aggregations == null) {
+			return writeApiFuture;
+		}
+
+		invalidateCache(documentReferences, cache, aggregations);
+		return ApiFutures.transform(writeApiFuture, result -> {
+			invalidateCache(documentReferences, cache, aggregations);
+			return result;
+		}, MoreExecutors.directExecutor());
+	}
+
+	private static void invalidateCache(List<DocumentReference> documentReferences, @Nullable DocumentCache cache, @Nullable AggregationCache aggregations) {
+		if (cache != null) {
+			documentReferences.forEach(documentReference -> cache.invalidate(documentReference.getPath()));
+		}
+		if (aggregations != null) {
+			aggregations.invalidateAll();
+		}
+	}
+
+	private <R> ApiFuture<List<R>> getAllAsync(List<DocumentReference> references, @Nullable FieldMask fieldMask,
+											   ApiFunction<List<DocumentSnapshot>, List<R>> mapper, Executor mapperExecutor) {
+		if (references.isEmpty()) {
+			return ApiFutures.immediateFuture(Collections.emptyList());
+		}
+
+		List<ApiFuture<List<R>>> batchApiFutures = new ArrayList<>();
+		for (int from = 0; from < references.size(); from += GET_ALL_BATCH_SIZE) {
+			int to = Math.min(from + GET_ALL_BATCH_SIZE, references.size());
+			DocumentReference[] batch = references.subList(from, to).toArray(new DocumentReference[0]);
+			ApiFuture<List<DocumentSnapshot>> batchApiFuture = fieldMask == null ? firestore.getAll(batch) : firestore.getAll(batch, fieldMask);
+			batchApiFutures.add(ApiFutures.transform(batchApiFuture, mapper, mapperExecutor));
+		}
+
+		return ApiFutures.transform(ApiFutures.allAsList(batchApiFutures), batches -> {
+			List<R> result = new ArrayList<>(references.size());
+			batches.forEach(result::addAll);
+			return result;
+		}, MoreExecutors.directExecutor());
+	}
+
+	private List<Optional<T>> toOptionals(List<DocumentSnapshot> documentSnapshots) {
+		List<Optional<T>> result = new ArrayList<>(documentSnapshots.size());
+		for (DocumentSnapshot documentSnapshot : documentSnapshots) {
+			result.add(Optional.ofNullable(toObject(documentSnapshot)));
+		}
+		return result;
+	}
+
 	public List<T> paginate(@NotNull Query query, @Nullable String orderBy, @NotNull CollectionPageRequest collectionPageRequest, int defaultLimit) {
+		long startNanos = System.nanoTime();
+		Query pageQuery = buildPageQuery(query, orderBy, collectionPageRequest, defaultLimit);
+		return extractQuery(record("paginate", startNanos, pageQuery.get()));
+	}
+
+	public List<T> paginate(CollectionReference collectionReference, @Nullable String orderBy, CollectionPageRequest collectionPageRequest, int defaultLimit) {
+		return paginate((Query) collectionReference, orderBy, collectionPageRequest, defaultLimit);
+	}
+
+	public ApiFuture<List<T>> paginateAsync(@NotNull Query query, @Nullable String orderBy, @NotNull CollectionPageRequest collectionPageRequest, int defaultLimit) {
+		long startNanos = System.nanoTime();
+		Query pageQuery = buildPageQuery(query, orderBy, collectionPageRequest, defaultLimit);
+		return extractQueryAsync(record("paginate", startNanos, pageQuery.get()));
+	}
+
+	public <P> List<P> paginate(@NotNull Query query, @Nullable String orderBy, @NotNull CollectionPageRequest collectionPageRequest, int defaultLimit,
+								@NotNull Projection<P> projection) {
+		return resolveFuture(paginateAsync(query, orderBy, collectionPageRequest, defaultLimit, projection));
+	}
+
+	public <P> ApiFuture<List<P>> paginateAsync(@NotNull Query query, @Nullable String orderBy, @NotNull CollectionPageRequest collectionPageRequest, int defaultLimit,
+												@NotNull Projection<P> projection) {
+		long startNanos = System.nanoTime();
+		Query pageQuery = projection.select(buildPageQuery(query, orderBy, collectionPageRequest, defaultLimit));
+		return extractQueryAsync(record("paginate", startNanos, pageQuery.get()), projection);
+	}
+
+	private Query buildPageQuery(Query query, @Nullable String orderBy, CollectionPageRequest collectionPageRequest, int defaultLimit) {
 		int limit = collectionPageRequest.getLimit() == null ? defaultLimit : collectionPageRequest.getLimit();
 		int offset = collectionPageRequest.getOffset() == null ? 0 : collectionPageRequest.getOffset();
 
@@ -130,26 +1134,115 @@ public abstract class AbstractFirestoreRepository<T> {
 		} else {
 			query = query.limit(limit);
 		}
-		ApiFuture<QuerySnapshot> querySnapshotApiFuture = query.offset(offset).get();
-		return extractQuery(querySnapshotApiFuture);
+		return query.offset(offset);
 	}
 
-	public List<T> paginate(CollectionReference collectionReference, @Nullable String orderBy, CollectionPageRequest collectionPageRequest, int defaultLimit) {
+	/**
+	 * Pagina la coleccion por cursor usando el campo OrderBy y el id del documento.
+	 * A diferencia de {@link #findAll(CollectionPageRequest, String...)} no lee los documentos anteriores a la pagina.
+	 *
+	 * @param collectionPageRequest - limite y token de la pagina, el offset se ignora
+	 * @return Pagina con los documentos y el token de la siguiente
+	 */
+	public CollectionPage<T> findPage(CollectionPageRequest collectionPageRequest, String... collectionPathVariables) {
+		return resolveFuture(findPageAsync(collectionPageRequest, collectionPathVariables));
+	}
+
+	public ApiFuture<CollectionPage<T>> findPageAsync(CollectionPageRequest collectionPageRequest, String... collectionPathVariables) {
+		CollectionReference collectionReference = getCollectionReference(collectionPathVariables);
+		return paginateByCursorAsync(collectionReference, getOrderByName(), collectionPageRequest, DEFAULT_PAGE_LIMIT);
+	}
+
+	public <P> CollectionPage<P> findPage(@NotNull Projection<P> projection, CollectionPageRequest collectionPageRequest, String... collectionPathVariables) {
+		return resolveFuture(findPageAsync(projection, collectionPageRequest, collectionPathVariables));
+	}
+
+	public <P> ApiFuture<CollectionPage<P>> findPageAsync(@NotNull Projection<P> projection, CollectionPageRequest collectionPageRequest, String... collectionPathVariables) {
+		CollectionReference collectionReference = getCollectionReference(collectionPathVariables);
+		return paginateByCursorAsync(collectionReference, getOrderByName(), collectionPageRequest, DEFAULT_PAGE_LIMIT, projection);
+	}
+
+	public CollectionPage<T> paginateByCursor(@NotNull Query query, @Nullable String orderBy, @NotNull CollectionPageRequest collectionPageRequest, int defaultLimit) {
+		return resolveFuture(paginateByCursorAsync(query, orderBy, collectionPageRequest, defaultLimit));
+	}
+
+	public ApiFuture<CollectionPage<T>> paginateByCursorAsync(@NotNull Query query, @Nullable String orderBy, @NotNull CollectionPageRequest collectionPageRequest, int defaultLimit) {
+		return paginateByCursorAsync(query, orderBy, collectionPageRequest, defaultLimit, this::toObject);
+	}
+
+	/**
+	 * Paginacion por cursor leyendo solo los campos de la proyeccion, mas el campo OrderBy que hace falta para el token
+	 */
+	public <P> ApiFuture<CollectionPage<P>> paginateByCursorAsync(@NotNull Query query, @Nullable String orderBy, @NotNull CollectionPageRequest collectionPageRequest,
+																  int defaultLimit, @NotNull Projection<P> projection) {
+		Query projectedQuery = orderBy == null ? projection.select(query) : projection.select(query, orderBy);
+		return paginateByCursorAsync(projectedQuery, orderBy, collectionPageRequest, defaultLimit, projection::toObject);
+	}
+
+	private <P> ApiFuture<CollectionPage<P>> paginateByCursorAsync(Query query, @Nullable String orderBy, CollectionPageRequest collectionPageRequest, int defaultLimit,
+																   Function<DocumentSnapshot, P> mapper) {
+		long startNanos = System.nanoTime();
 		int limit = collectionPageRequest.getLimit() == null ? defaultLimit : collectionPageRequest.getLimit();
-		int offset = collectionPageRequest.getOffset() == null ? 0 : collectionPageRequest.getOffset();
+		if (limit < 1) {
+			throw new IllegalArgumentException("El limite de la pagina tiene que ser mayor que 0");
+		}
 
-		Query query;
 		if (orderBy != null) {
-			query = collectionReference.orderBy(orderBy).limit(limit);
-		} else {
-			query = collectionReference.limit(limit);
+			query = query.orderBy(orderBy);
+		}
+		query = query.orderBy(FieldPath.documentId());
+		if (collectionPageRequest.getPageToken() != null) {
+			query = query.startAfter(PageTokens.decode(collectionPageRequest.getPageToken()));
 		}
-		ApiFuture<QuerySnapshot> querySnapshotApiFuture = query.offset(offset).get();
-		return extractQuery(querySnapshotApiFuture);
+
+		// Se pide un documento de mas para saber si existe una pagina siguiente
+		ApiFuture<QuerySnapshot> querySnapshotApiFuture = record("findPage", startNanos, query.limit(limit + 1).get());
+		return ApiFutures.transform(querySnapshotApiFuture, querySnapshot -> {
+			List<QueryDocumentSnapshot> documents = querySnapshot.getDocuments();
+			String nextPageToken = null;
+			if (documents.size() > limit) {
+				documents = documents.subList(0, limit);
+				nextPageToken = PageTokens.encode(documents.get(limit - 1), orderBy);
+			}
+			List<P> items = documents.stream()
+					.map(mapper)
+					.filter(Objects::nonNull)
+					.collect(Collectors.toList());
+			return new CollectionPage<>(items, nextPageToken);
+		}, executor);
+	}
+
+	private <Z> ApiFuture<Z> record(String operation, long startNanos, ApiFuture<Z> future) {
+		return repositoryMetrics.record(collectionName, operation, startNanos, future);
 	}
 
 	public List<T> extractQuery(ApiFuture<QuerySnapshot> querySnapshotApiFuture) {
 		QuerySnapshot queryDocumentSnapshots = resolveFuture(querySnapshotApiFuture);
+		return toList(queryDocumentSnapshots);
+	}
+
+	public ApiFuture<List<T>> extractQueryAsync(ApiFuture<QuerySnapshot> querySnapshotApiFuture) {
+		return ApiFutures.transform(querySnapshotApiFuture, this::toList, executor);
+	}
+
+	/**
+	 * Ejecuta la consulta con el select de la proyeccion
+	 */
+	public <P> List<P> extractQuery(@NotNull Query query, @NotNull Projection<P> projection) {
+		return resolveFuture(extractQueryAsync(projection.select(query).get(), projection));
+	}
+
+	/**
+	 * @param querySnapshotApiFuture - resultado de una consulta a la que ya se ha aplicado {@link Projection#select}
+	 */
+	public <P> ApiFuture<List<P>> extractQueryAsync(ApiFuture<QuerySnapshot> querySnapshotApiFuture, @NotNull Projection<P> projection) {
+		return ApiFutures.transform(querySnapshotApiFuture, querySnapshot -> querySnapshot.getDocuments().stream()
+				.map(projection::toObject)
+				.filter(Objects::nonNull)
+				.collect(Collectors.toList()), executor);
+	}
+
+	private List<T> toList(@Nullable QuerySnapshot queryDocumentSnapshots) {
 		if (queryDocumentSnapshots == null) {
 			return Collections.emptyList();
 		}
@@ -169,6 +1262,15 @@ public abstract class AbstractFirestoreRepository<T> {
 		}
 	}
 
+	private <Z> Z resolveFuture(ApiFuture<Z> future, String action) {
+		try {
+			return future.get();
+		} catch (InterruptedException | ExecutionException e) {
+			String msg = String.format("Error %s %s, %s", action, collectionName, e.getMessage());
+			throw new FirestoreError(msg, e);
+		}
+	}
+
 	public CollectionReference getCollectionReference(String... collectionPathsValues) {
 		String collectionName = getCollectionName();
 		return UtilFirestore.parseCollectionReference(firestore, collectionName, collectionPathsValues);
@@ -178,6 +1280,71 @@ public abstract class AbstractFirestoreRepository<T> {
 		return firestore;
 	}
 
+	/**
+	 * Executor en el que se convierten los snapshots a modelos en las operaciones asincronas
+	 */
+	public Executor getExecutor() {
+		return executor;
+	}
+
+	public void setExecutor(@NotNull Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Cache de documentos del repositorio, null si la coleccion no esta anotada con {@link CachedCollection}
+	 */
+	@Nullable
+	public DocumentCache getDocumentCache() {
+		return documentCache;
+	}
+
+	public void setDocumentCache(@Nullable DocumentCache documentCache) {
+		this.documentCache = documentCache;
+		if (documentCache != null) {
+			repositoryMetrics.bindCache(collectionName, documentCache);
+		}
+	}
+
+	/**
+	 * Cache de count, sum y average, null si no esta activada con {@link CachedCollection#aggregationTtlSeconds()}
+	 */
+	@Nullable
+	public AggregationCache getAggregationCache() {
+		return aggregationCache;
+	}
+
+	public void setAggregationCache(@Nullable AggregationCache aggregationCache) {
+		this.aggregationCache = aggregationCache;
+	}
+
+	/**
+	 * Mapper de documentos del repositorio, null si se usa el mapper por reflexion del cliente
+	 */
+	@Nullable
+	public DocumentMapper<T> getDocumentMapper() {
+		return documentMapper;
+	}
+
+	public void setDocumentMapper(@Nullable DocumentMapper<T> documentMapper) {
+		this.documentMapper = documentMapper;
+	}
+
+	public RepositoryMetrics getRepositoryMetrics() {
+		return repositoryMetrics;
+	}
+
+	/**
+	 * Se inyecta automaticamente si Micrometer esta en el classpath, ver {@link RepositoryMetrics}
+	 */
+	@Autowired(required = false)
+	public void setRepositoryMetrics(@NotNull RepositoryMetrics repositoryMetrics) {
+		this.repositoryMetrics = repositoryMetrics;
+		if (documentCache != null) {
+			repositoryMetrics.bindCache(collectionName, documentCache);
+		}
+	}
+
 	public String getCollectionName() {
 		return collectionName;
 	}
@@ -186,15 +1353,33 @@ public abstract class AbstractFirestoreRepository<T> {
 		return this.parameterizedType;
 	}
 
+	public EntityMetadata<T> getMetadata() {
+		return metadata;
+	}
+
+	/**
+	 * Modo de guardado por defecto del repositorio, sobreescribir para cambiarlo
+	 */
+	public SaveMode getSaveMode() {
+		return SaveMode.READ_BEFORE_WRITE;
+	}
+
+	/**
+	 * Modo de escritura por defecto de update y saveChanges, sobreescribir para cambiarlo
+	 */
+	public UpdateMode getUpdateMode() {
+		return UpdateMode.UPDATE;
+	}
+
 	@Nullable
 	public String getOrderByName() {
-		return UtilFirestore.getOrderByField(getType());
+		return metadata.getOrderByName();
 	}
 
 	@Nullable
 	public T toObject(@Nullable DocumentSnapshot documentSnapshot) {
 		if (documentSnapshot != null && documentSnapshot.exists()) {
-			return documentSnapshot.toObject(getType());
+			return documentMapper == null ? documentSnapshot.toObject(getType()) : documentMapper.toObject(documentSnapshot);
 		}
 		return null;
 	}
@@ -0,0 +1,86 @@
+package com.victorlh.gcp.spring.libfirestore;
+
+import com.google.cloud.firestore.Query;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.firestore.v1.StructuredQuery;
+import com.victorlh.gcp.spring.libfirestore.errors.FirestoreError;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Recorre una query en bloques de chunkSize documentos con startAfter.
+ * Cada bloque solo se pide cuando el consumidor ha terminado el anterior, por lo que la memoria usada es constante.
+ * <p>
+ * Se respeta el orden de la query: el cursor de startAfter lo construye el cliente con los orderBy de la query,
+ * los campos de las desigualdades y el id del documento como desempate. El limit de la query es el total de documentos
+ * a recorrer y el offset solo se aplica al primer bloque. No admite queries con limitToLast.
+ */
+class ChunkedQueryIterator implements Iterator<QueryDocumentSnapshot> {
+
+	private final Query query;
+	private final int chunkSize;
+	private final boolean offset;
+	private long remaining;
+
+	private List<QueryDocumentSnapshot> chunk = Collections.emptyList();
+	private int position;
+	private QueryDocumentSnapshot lastDocument;
+	private boolean lastChunk;
+
+	ChunkedQueryIterator(Query query, int chunkSize) {
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("El tamaño del bloque tiene que ser mayor que 0");
+		}
+		this.query = query;
+		this.chunkSize = chunkSize;
+		StructuredQuery structuredQuery = query.toProto().getStructuredQuery();
+		this.offset = structuredQuery.getOffset() > 0;
+		this.remaining = structuredQuery.hasLimit() ? structuredQuery.getLimit().getValue() : Long.MAX_VALUE;
+		this.lastChunk = remaining == 0;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (position < chunk.size()) {
+			return true;
+		}
+		if (lastChunk) {
+			return false;
+		}
+		fetchNextChunk();
+		return position < chunk.size();
+	}
+
+	@Override
+	public QueryDocumentSnapshot next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		lastDocument = chunk.get(position++);
+		return lastDocument;
+	}
+
+	private void fetchNextChunk() {
+		Query chunkQuery = query;
+		if (lastDocument != null) {
+			chunkQuery = query.startAfter(lastDocument);
+			if (offset) {
+				chunkQuery = chunkQuery.offset(0);
+			}
+		}
+		int limit = (int) Math.min(chunkSize, remaining);
+		try {
+			chunk = chunkQuery.limit(limit).get().get().getDocuments();
+		} catch (InterruptedException | ExecutionException e) {
+			String msg = String.format("Error streaming %s, %s", query, e.getMessage());
+			throw new FirestoreError(msg, e);
+		}
+		position = 0;
+		remaining -= chunk.size();
+		lastChunk = chunk.size() < limit || remaining == 0;
+	}
+}
@@ -0,0 +1,25 @@
+package com.victorlh.gcp.spring.libfirestore;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class CollectionPage<T> {
+
+	private final List<T> items;
+	/**
+	 * Token para pedir la siguiente pagina, null si no hay mas resultados
+	 */
+	@Nullable
+	private final String nextPageToken;
+
+	public boolean hasNext() {
+		return nextPageToken != null;
+	}
+}
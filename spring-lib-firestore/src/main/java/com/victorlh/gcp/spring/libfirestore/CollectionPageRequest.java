@@ -11,5 +11,9 @@ public class CollectionPageRequest {
 
 	private final Integer limit;
 	private final Integer offset;
+	/**
+	 * Token devuelto en {@link CollectionPage#getNextPageToken()}, solo se usa en la paginacion por cursor
+	 */
+	private final String pageToken;
 
 }
@@ -1,5 +1,6 @@
 package com.victorlh.gcp.spring.libfirestore;
 
+import com.victorlh.gcp.spring.libfirestore.conf.FirestoreMetricsConfiguration;
 import com.victorlh.gcp.spring.libfirestore.conf.SpringFirestoreConf;
 import org.springframework.context.annotation.Import;
 
@@ -10,6 +11,6 @@ import java.lang.annotation.Target;
 
 @Retention(RetentionPolicy.RUNTIME)
 @Target(ElementType.TYPE)
-@Import(SpringFirestoreConf.class)
+@Import({SpringFirestoreConf.class, FirestoreMetricsConfiguration.class})
 public @interface EnableFirestore {
 }
\ No newline at end of file
@@ -0,0 +1,103 @@
+package com.victorlh.gcp.spring.libfirestore;
+
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.DocumentSnapshot;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+
+/**
+ * Codifica el cursor de una pagina (valor del campo OrderBy e id del ultimo documento) en un token opaco
+ */
+final class PageTokens {
+
+	private static final char NULL = 'n';
+	private static final char STRING = 's';
+	private static final char LONG = 'l';
+	private static final char DOUBLE = 'd';
+	private static final char BOOLEAN = 'b';
+	private static final char TIMESTAMP = 't';
+
+	private PageTokens() {
+	}
+
+	static String encode(DocumentSnapshot lastDocument, @Nullable String orderBy) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeUTF(lastDocument.getId());
+			out.writeBoolean(orderBy != null);
+			if (orderBy != null) {
+				writeValue(out, lastDocument.get(orderBy));
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+	}
+
+	/**
+	 * @return Valores para startAfter: [valor OrderBy, id] o [id] si no hay OrderBy
+	 */
+	static Object[] decode(String pageToken) {
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(pageToken)))) {
+			String documentId = in.readUTF();
+			if (!in.readBoolean()) {
+				return new Object[]{documentId};
+			}
+			return new Object[]{readValue(in), documentId};
+		} catch (IOException | IllegalArgumentException e) {
+			throw new IllegalArgumentException("Token de pagina invalido", e);
+		}
+	}
+
+	private static void writeValue(DataOutputStream out, @Nullable Object value) throws IOException {
+		if (value == null) {
+			out.writeChar(NULL);
+		} else if (value instanceof String) {
+			out.writeChar(STRING);
+			out.writeUTF((String) value);
+		} else if (value instanceof Long || value instanceof Integer) {
+			out.writeChar(LONG);
+			out.writeLong(((Number) value).longValue());
+		} else if (value instanceof Double || value instanceof Float) {
+			out.writeChar(DOUBLE);
+			out.writeDouble(((Number) value).doubleValue());
+		} else if (value instanceof Boolean) {
+			out.writeChar(BOOLEAN);
+			out.writeBoolean((Boolean) value);
+		} else if (value instanceof Timestamp) {
+			out.writeChar(TIMESTAMP);
+			out.writeLong(((Timestamp) value).getSeconds());
+			out.writeInt(((Timestamp) value).getNanos());
+		} else {
+			String error = String.format("Tipo de campo OrderBy no soportado para paginacion por cursor: %s", value.getClass().getName());
+			throw new IllegalArgumentException(error);
+		}
+	}
+
+	@Nullable
+	private static Object readValue(DataInputStream in) throws IOException {
+		char type = in.readChar();
+		switch (type) {
+			case NULL:
+				return null;
+			case STRING:
+				return in.readUTF();
+			case LONG:
+				return in.readLong();
+			case DOUBLE:
+				return in.readDouble();
+			case BOOLEAN:
+				return in.readBoolean();
+			case TIMESTAMP:
+				return Timestamp.ofTimeSecondsAndNanos(in.readLong(), in.readInt());
+			default:
+				throw new IOException("Tipo de valor desconocido " + type);
+		}
+	}
+}
@@ -0,0 +1,164 @@
+package com.victorlh.gcp.spring.libfirestore;
+
+import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldPath;
+import com.google.cloud.firestore.Query;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.QueryPartition;
+import com.victorlh.gcp.spring.libfirestore.errors.FirestoreError;
+import com.victorlh.gcp.spring.libfirestore.scan.ScanOptions;
+import com.victorlh.gcp.spring.libfirestore.scan.ScanProgress;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nullable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Recorre una coleccion dividiendola con {@link com.google.cloud.firestore.CollectionGroup#getPartitions(long)}
+ * y procesando las particiones en paralelo en un {@link ForkJoinPool} acotado.
+ * <p>
+ * Firestore solo particiona grupos de colecciones, asi que de los puntos de corte del grupo con el mismo id se usan
+ * los que son documentos de la coleccion y cada particion se lee con una consulta de la propia coleccion entre ellos.
+ * Asi no se leen documentos de otras colecciones con ese id (p.e. subcolecciones de otros documentos padre).
+ * Si la coleccion es pequeña respecto al grupo puede que no caiga ningun punto de corte y se lea en una sola particion.
+ */
+@Slf4j
+class PartitionedScan<T> {
+
+	private static final int DEFAULT_CHUNK_SIZE = 500;
+	private static final int PARTITIONS_PER_THREAD = 4;
+
+	private final CollectionReference collectionReference;
+	private final Function<DocumentSnapshot, T> mapper;
+	private final int parallelism;
+	private final long partitionCount;
+	private final int chunkSize;
+	@Nullable
+	private final Consumer<ScanProgress> progressListener;
+
+	private final LongAdder documents = new LongAdder();
+	private final AtomicInteger completedPartitions = new AtomicInteger();
+	private volatile boolean cancelled;
+	private int partitions;
+	private long startNanos;
+
+	PartitionedScan(CollectionReference collectionReference, Function<DocumentSnapshot, T> mapper, ScanOptions scanOptions) {
+		this.collectionReference = collectionReference;
+		this.mapper = mapper;
+		this.parallelism = scanOptions.getParallelism() == null ? Runtime.getRuntime().availableProcessors() : scanOptions.getParallelism();
+		this.partitionCount = scanOptions.getPartitionCount() == null ? (long) parallelism * PARTITIONS_PER_THREAD : scanOptions.getPartitionCount();
+		this.chunkSize = scanOptions.getChunkSize() == null ? DEFAULT_CHUNK_SIZE : scanOptions.getChunkSize();
+		this.progressListener = scanOptions.getProgressListener();
+		if (parallelism < 1 || partitionCount < 1) {
+			throw new IllegalArgumentException("El numero de hilos y de particiones tiene que ser mayor que 0");
+		}
+	}
+
+	/**
+	 * @param callback - se llama por cada documento desde varios hilos a la vez
+	 * @return Progreso final del recorrido
+	 */
+	ScanProgress run(Consumer<T> callback) {
+		startNanos = System.nanoTime();
+		List<Query> partitionQueries = getPartitionQueries();
+		partitions = partitionQueries.size();
+
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			List<ForkJoinTask<?>> tasks = new ArrayList<>(partitions);
+			for (Query partitionQuery : partitionQueries) {
+				tasks.add(pool.submit(() -> scanPartition(partitionQuery, callback)));
+			}
+			for (ForkJoinTask<?> task : tasks) {
+				task.get();
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			cancelled = true;
+			String msg = String.format("Error scanning %s, %s", collectionReference.getPath(), e.getMessage());
+			throw new FirestoreError(msg, e);
+		} finally {
+			pool.shutdownNow();
+		}
+
+		ScanProgress scanProgress = getProgress();
+		log.info("{} scanned {} documents in {} partitions, {} docs/s", collectionReference.getPath(), scanProgress.getDocuments(),
+				partitions, Math.round(scanProgress.getDocumentsPerSecond()));
+		return scanProgress;
+	}
+
+	/**
+	 * Consultas de la coleccion ordenadas por id entre los puntos de corte del grupo que son documentos de la coleccion
+	 */
+	private List<Query> getPartitionQueries() {
+		List<QueryPartition> queryPartitions;
+		try {
+			queryPartitions = collectionReference.getFirestore().collectionGroup(collectionReference.getId()).getPartitions(partitionCount).get();
+		} catch (InterruptedException | ExecutionException e) {
+			String msg = String.format("Error partitioning %s, %s", collectionReference.getPath(), e.getMessage());
+			throw new FirestoreError(msg, e);
+		}
+
+		String collectionPath = collectionReference.getPath();
+		List<DocumentReference> splitPoints = new ArrayList<>();
+		for (QueryPartition queryPartition : queryPartitions) {
+			Object[] endBefore = queryPartition.getEndBefore();
+			if (endBefore != null && endBefore.length == 1 && endBefore[0] instanceof DocumentReference) {
+				DocumentReference splitPoint = (DocumentReference) endBefore[0];
+				if (splitPoint.getParent().getPath().equals(collectionPath)) {
+					splitPoints.add(splitPoint);
+				}
+			}
+		}
+
+		Query query = collectionReference.orderBy(FieldPath.documentId());
+		List<Query> partitionQueries = new ArrayList<>(splitPoints.size() + 1);
+		DocumentReference startAt = null;
+		for (DocumentReference splitPoint : splitPoints) {
+			partitionQueries.add(startAt == null ? query.endBefore(splitPoint) : query.startAt(startAt).endBefore(splitPoint));
+			startAt = splitPoint;
+		}
+		partitionQueries.add(startAt == null ? query : query.startAt(startAt));
+		return partitionQueries;
+	}
+
+	private void scanPartition(Query partitionQuery, Consumer<T> callback) {
+		Iterator<QueryDocumentSnapshot> iterator = new ChunkedQueryIterator(partitionQuery, chunkSize);
+		int chunkDocuments = 0;
+		while (!cancelled && iterator.hasNext()) {
+			QueryDocumentSnapshot documentSnapshot = iterator.next();
+			T model = mapper.apply(documentSnapshot);
+			if (model != null) {
+				callback.accept(model);
+			}
+			documents.increment();
+			if (++chunkDocuments == chunkSize) {
+				chunkDocuments = 0;
+				reportProgress();
+			}
+		}
+		completedPartitions.incrementAndGet();
+		reportProgress();
+	}
+
+	private void reportProgress() {
+		if (progressListener != null) {
+			progressListener.accept(getProgress());
+		}
+	}
+
+	private ScanProgress getProgress() {
+		return new ScanProgress(partitions, completedPartitions.get(), documents.sum(), Duration.ofNanos(System.nanoTime() - startNanos));
+	}
+}
@@ -0,0 +1,86 @@
+package com.victorlh.gcp.spring.libfirestore;
+
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.Query;
+import com.victorlh.gcp.spring.libfirestore.mapper.CompiledDocumentMapper;
+import com.victorlh.gcp.spring.libfirestore.mapper.DocumentMapper;
+import com.victorlh.gcp.spring.libfirestore.metadata.EntityMetadataRegistry;
+
+import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Campos que se piden con {@link Query#select(String...)} y conversion de cada documento parcial al tipo de la proyeccion.
+ * Los campos que no se seleccionan no se descargan.
+ */
+public class Projection<P> {
+
+	private final List<String> fields;
+	private final Function<DocumentSnapshot, P> mapper;
+
+	private Projection(List<String> fields, Function<DocumentSnapshot, P> mapper) {
+		this.fields = Collections.unmodifiableList(fields);
+		this.mapper = mapper;
+	}
+
+	/**
+	 * Proyeccion a los datos del documento. El Map solo tiene los campos seleccionados, sin el id del documento.
+	 *
+	 * @param fields - rutas de los campos, admite rutas con puntos
+	 */
+	public static Projection<Map<String, Object>> fields(@NotNull String... fields) {
+		return new Projection<>(List.of(fields), DocumentSnapshot::getData);
+	}
+
+	/**
+	 * Proyeccion a una clase ligera (DTO), que puede tener su propio campo {@link com.google.cloud.firestore.annotation.DocumentId}
+	 *
+	 * @param type   - clase de la proyeccion
+	 * @param fields - rutas de los campos; si no se indican se seleccionan las propiedades de la clase
+	 */
+	public static <P> Projection<P> of(@NotNull Class<P> type, @NotNull String... fields) {
+		DocumentMapper<P> documentMapper = EntityMetadataRegistry.getMetadata(type).getDocumentMapper();
+		List<String> selectedFields;
+		if (fields.length > 0) {
+			selectedFields = List.of(fields);
+		} else if (documentMapper instanceof CompiledDocumentMapper) {
+			selectedFields = new ArrayList<>(((CompiledDocumentMapper<P>) documentMapper).getPropertyNames());
+			Collections.sort(selectedFields);
+		} else {
+			String error = String.format("No se pueden deducir los campos de %s, hay que indicarlos en la proyeccion", type.getName());
+			throw new IllegalArgumentException(error);
+		}
+
+		if (documentMapper == null) {
+			return new Projection<>(selectedFields, documentSnapshot -> documentSnapshot.toObject(type));
+		}
+		return new Projection<>(selectedFields, documentMapper::toObject);
+	}
+
+	public List<String> getFields() {
+		return fields;
+	}
+
+	/**
+	 * Aplica el select a la consulta
+	 *
+	 * @param extraFields - campos que hacen falta ademas de los de la proyeccion, p.e. el OrderBy para el cursor de pagina
+	 */
+	public Query select(@NotNull Query query, @NotNull String... extraFields) {
+		List<String> selectedFields = new ArrayList<>(fields);
+		for (String extraField : extraFields) {
+			if (!selectedFields.contains(extraField)) {
+				selectedFields.add(extraField);
+			}
+		}
+		return query.select(selectedFields.toArray(new String[0]));
+	}
+
+	public P toObject(@NotNull DocumentSnapshot documentSnapshot) {
+		return mapper.apply(documentSnapshot);
+	}
+}
@@ -0,0 +1,21 @@
+package com.victorlh.gcp.spring.libfirestore;
+
+public enum SaveMode {
+
+	/**
+	 * Lee el documento antes de escribirlo para saber si hay que rellenar el campo {@link com.victorlh.gcp.spring.libfirestore.anotations.CreateAt}.
+	 * Si el modelo no tiene campo CreateAt no se hace la lectura.
+	 */
+	READ_BEFORE_WRITE,
+
+	/**
+	 * Escritura sin lectura previa. Si el CreateAt del modelo ya tiene valor se hace un set directo,
+	 * si no se intenta un create() y, solo si el documento ya existia, se repite como set().
+	 */
+	BLIND,
+
+	/**
+	 * Lectura y escritura dentro de una transaccion, para cuando hay escrituras concurrentes sobre el mismo documento
+	 */
+	TRANSACTIONAL
+}
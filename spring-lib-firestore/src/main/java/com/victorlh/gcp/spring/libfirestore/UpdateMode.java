@@ -0,0 +1,15 @@
+package com.victorlh.gcp.spring.libfirestore;
+
+public enum UpdateMode {
+
+	/**
+	 * update() solo con los campos cambiados. Falla con NOT_FOUND si el documento no existe.
+	 */
+	UPDATE,
+
+	/**
+	 * set() con merge de los campos cambiados. Si el documento no existe se crea solo con esos campos,
+	 * mas el {@link com.victorlh.gcp.spring.libfirestore.anotations.CreateAt} si se conoce que no existia.
+	 */
+	MERGE
+}
@@ -0,0 +1,22 @@
+package com.victorlh.gcp.spring.libfirestore.anotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Activa la cache de documentos en el repositorio de la coleccion
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface CachedCollection {
+	int maxSize() default 1000;
+
+	long ttlSeconds() default 60;
+
+	/**
+	 * Segundos que se guardan los resultados de count, sum y average. 0 desactiva la cache de agregaciones
+	 */
+	long aggregationTtlSeconds() default 0;
+}
@@ -0,0 +1,15 @@
+package com.victorlh.gcp.spring.libfirestore.anotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Mantiene una replica en memoria de la coleccion, sincronizada con un snapshot listener.
+ * Solo para colecciones pequeñas y sin variables en la ruta.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface ReplicatedCollection {
+}
@@ -0,0 +1,30 @@
+package com.victorlh.gcp.spring.libfirestore.bulk;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+@Builder
+@Getter
+@ToString
+public class BulkWriteOptions {
+
+	public static final int MAX_ATOMIC_WRITES = 500;
+	public static final BulkWriteOptions DEFAULT = BulkWriteOptions.builder().build();
+
+	/**
+	 * Escribe todos los documentos en un unico WriteBatch: o se escriben todos o ninguno (maximo {@value MAX_ATOMIC_WRITES})
+	 */
+	private final boolean atomic;
+	/**
+	 * Operaciones por segundo iniciales del BulkWriter, se incrementan progresivamente hasta maxOpsPerSecond
+	 */
+	private final Integer initialOpsPerSecond;
+	private final Integer maxOpsPerSecond;
+	private final Boolean throttlingEnabled;
+	/**
+	 * Numero maximo de intentos por documento ante errores recuperables
+	 */
+	private final Integer maxAttempts;
+
+}
@@ -0,0 +1,43 @@
+package com.victorlh.gcp.spring.libfirestore.bulk;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Resultado de una escritura masiva, con un resultado por documento en el mismo orden de entrada
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class BulkWriteResult<T> {
+
+	private final List<DocumentWriteResult<T>> results;
+
+	public boolean hasFailures() {
+		return results.stream().anyMatch(r -> !r.isSuccess());
+	}
+
+	public long getSuccessCount() {
+		return results.stream().filter(DocumentWriteResult::isSuccess).count();
+	}
+
+	public List<DocumentWriteResult<T>> getFailures() {
+		return results.stream()
+				.filter(r -> !r.isSuccess())
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Modelos que no se han podido escribir, para reintentarlos con otra llamada a saveAll/deleteAll
+	 */
+	public List<T> getFailedModels() {
+		return results.stream()
+				.filter(r -> !r.isSuccess())
+				.map(DocumentWriteResult::getModel)
+				.collect(Collectors.toList());
+	}
+}
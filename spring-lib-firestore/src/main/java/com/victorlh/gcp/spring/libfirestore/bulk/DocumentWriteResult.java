@@ -0,0 +1,34 @@
+package com.victorlh.gcp.spring.libfirestore.bulk;
+
+import com.google.cloud.firestore.WriteResult;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import javax.annotation.Nullable;
+
+@Getter
+@ToString
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class DocumentWriteResult<T> {
+
+	private final String documentId;
+	private final T model;
+	@Nullable
+	private final WriteResult writeResult;
+	@Nullable
+	private final Throwable error;
+
+	public static <T> DocumentWriteResult<T> success(String documentId, T model, WriteResult writeResult) {
+		return new DocumentWriteResult<>(documentId, model, writeResult, null);
+	}
+
+	public static <T> DocumentWriteResult<T> failure(String documentId, T model, Throwable error) {
+		return new DocumentWriteResult<>(documentId, model, null, error);
+	}
+
+	public boolean isSuccess() {
+		return error == null;
+	}
+}
@@ -0,0 +1,86 @@
+package com.victorlh.gcp.spring.libfirestore.cache;
+
+import lombok.RequiredArgsConstructor;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache corta de resultados de count/sum/average por consulta, con expulsion por tamaño (LRU) y por tiempo.
+ * El repositorio la vacia entera en cada escritura propia; las escrituras de otros procesos se ven al expirar.
+ * Un resultado solo se guarda si no se ha vaciado desde que se tomo {@link #getVersion()}, antes de lanzar la consulta.
+ */
+public class AggregationCache {
+
+	private final long ttlNanos;
+	private final Map<Object, Entry> entries;
+	private long version;
+
+	public AggregationCache(int maxSize, Duration ttl) {
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("El tamaño de la cache tiene que ser mayor que 0");
+		}
+		if (ttl.isNegative() || ttl.isZero()) {
+			throw new IllegalArgumentException("La duracion de la cache de agregaciones tiene que ser mayor que 0");
+		}
+		this.ttlNanos = ttl.toNanos();
+		this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Object, Entry> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/**
+	 * @param key - operacion, campo y consulta; {@link com.google.cloud.firestore.Query} implementa equals
+	 */
+	@Nullable
+	public Object get(@NotNull Object key) {
+		synchronized (entries) {
+			Entry entry = entries.get(key);
+			if (entry == null) {
+				return null;
+			}
+			if (System.nanoTime() - entry.writtenAt > ttlNanos) {
+				entries.remove(key);
+				return null;
+			}
+			return entry.value;
+		}
+	}
+
+	public long getVersion() {
+		synchronized (entries) {
+			return version;
+		}
+	}
+
+	/**
+	 * @param version - valor de {@link #getVersion()} antes de lanzar la consulta
+	 */
+	public void put(@NotNull Object key, @NotNull Object value, long version) {
+		Entry entry = new Entry(value, System.nanoTime());
+		synchronized (entries) {
+			if (this.version == version) {
+				entries.put(key, entry);
+			}
+		}
+	}
+
+	public void invalidateAll() {
+		synchronized (entries) {
+			entries.clear();
+			version++;
+		}
+	}
+
+	@RequiredArgsConstructor
+	private static class Entry {
+		private final Object value;
+		private final long writtenAt;
+	}
+}
@@ -0,0 +1,37 @@
+package com.victorlh.gcp.spring.libfirestore.cache;
+
+import com.google.cloud.firestore.DocumentSnapshot;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Cache de snapshots por ruta de documento. Se guardan los snapshots (inmutables) y no los modelos
+ * para que cada lectura devuelva una instancia nueva.
+ * <p>
+ * Cada ruta tiene una version que cambia al invalidarla. Una lectura toma la version antes de pedir el documento
+ * y solo lo guarda si no ha cambiado, asi un snapshot leido antes de una escritura no vuelve a la cache despues.
+ */
+public interface DocumentCache {
+
+	@Nullable
+	DocumentSnapshot get(@NotNull String documentPath);
+
+	/**
+	 * Version actual de la ruta, se toma antes de leer el documento de Firestore
+	 */
+	long getVersion(@NotNull String documentPath);
+
+	/**
+	 * Guarda el snapshot solo si la ruta no se ha invalidado desde que se tomo la version
+	 *
+	 * @param version - valor de {@link #getVersion(String)} antes de leer el documento
+	 */
+	void put(@NotNull String documentPath, @NotNull DocumentSnapshot documentSnapshot, long version);
+
+	void invalidate(@NotNull String documentPath);
+
+	void invalidateAll();
+
+	CacheStats getStats();
+}
@@ -0,0 +1,124 @@
+package com.victorlh.gcp.spring.libfirestore.cache;
+
+import com.google.cloud.firestore.DocumentSnapshot;
+import lombok.RequiredArgsConstructor;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache en memoria con expulsion por tamaño (LRU) y por tiempo desde la escritura.
+ * Las versiones se guardan por franjas de rutas y no por ruta para no crecer sin limite; dos rutas de la misma
+ * franja solo provocan que se descarte algun put de mas.
+ */
+public class LruDocumentCache implements DocumentCache {
+
+	private static final int VERSION_STRIPES = 1024;
+
+	private final long ttlNanos;
+	private final Map<String, Entry> entries;
+	private final long[] versions = new long[VERSION_STRIPES];
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	public LruDocumentCache(int maxSize, Duration ttl) {
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("El tamaño de la cache tiene que ser mayor que 0");
+		}
+		this.ttlNanos = ttl.toNanos();
+		this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				if (size() > maxSize) {
+					evictions.increment();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	@Nullable
+	@Override
+	public DocumentSnapshot get(@NotNull String documentPath) {
+		Entry entry;
+		synchronized (entries) {
+			entry = entries.get(documentPath);
+			if (entry != null && isExpired(entry)) {
+				entries.remove(documentPath);
+				evictions.increment();
+				entry = null;
+			}
+		}
+		if (entry == null) {
+			misses.increment();
+			return null;
+		}
+		hits.increment();
+		return entry.documentSnapshot;
+	}
+
+	@Override
+	public long getVersion(@NotNull String documentPath) {
+		synchronized (entries) {
+			return versions[stripe(documentPath)];
+		}
+	}
+
+	@Override
+	public void put(@NotNull String documentPath, @NotNull DocumentSnapshot documentSnapshot, long version) {
+		Entry entry = new Entry(documentSnapshot, System.nanoTime());
+		synchronized (entries) {
+			if (versions[stripe(documentPath)] == version) {
+				entries.put(documentPath, entry);
+			}
+		}
+	}
+
+	@Override
+	public void invalidate(@NotNull String documentPath) {
+		synchronized (entries) {
+			entries.remove(documentPath);
+			versions[stripe(documentPath)]++;
+		}
+	}
+
+	@Override
+	public void invalidateAll() {
+		synchronized (entries) {
+			entries.clear();
+			for (int i = 0; i < versions.length; i++) {
+				versions[i]++;
+			}
+		}
+	}
+
+	@Override
+	public CacheStats getStats() {
+		int size;
+		synchronized (entries) {
+			size = entries.size();
+		}
+		return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), size);
+	}
+
+	private static int stripe(String documentPath) {
+		return Math.floorMod(documentPath.hashCode(), VERSION_STRIPES);
+	}
+
+	private boolean isExpired(Entry entry) {
+		return ttlNanos > 0 && System.nanoTime() - entry.writtenAt > ttlNanos;
+	}
+
+	@RequiredArgsConstructor
+	private static class Entry {
+		private final DocumentSnapshot documentSnapshot;
+		private final long writtenAt;
+	}
+}
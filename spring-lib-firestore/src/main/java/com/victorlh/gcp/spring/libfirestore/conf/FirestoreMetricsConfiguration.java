@@ -0,0 +1,25 @@
+package com.victorlh.gcp.spring.libfirestore.conf;
+
+import com.victorlh.gcp.spring.libfirestore.metrics.MicrometerRepositoryMetrics;
+import com.victorlh.gcp.spring.libfirestore.metrics.RepositoryMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Solo se procesa si Micrometer esta en el classpath. Sin MeterRegistry en el contexto las metricas no hacen nada.
+ */
+@Configuration
+@ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+public class FirestoreMetricsConfiguration {
+
+	@Bean
+	@ConditionalOnMissingBean
+	public RepositoryMetrics repositoryMetrics(ObjectProvider<MeterRegistry> meterRegistry) {
+		MeterRegistry registry = meterRegistry.getIfAvailable();
+		return registry == null ? RepositoryMetrics.NOOP : new MicrometerRepositoryMetrics(registry);
+	}
+}
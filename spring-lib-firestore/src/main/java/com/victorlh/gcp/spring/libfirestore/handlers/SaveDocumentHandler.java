@@ -1,23 +1,28 @@
 package com.victorlh.gcp.spring.libfirestore.handlers;
 
 import com.google.cloud.firestore.DocumentSnapshot;
-import com.victorlh.gcp.spring.libfirestore.utils.UtilFirestore;
+import com.victorlh.gcp.spring.libfirestore.metadata.EntityMetadata;
+import com.victorlh.gcp.spring.libfirestore.metadata.EntityMetadataRegistry;
+import com.victorlh.gcp.spring.libfirestore.metadata.FieldAccessor;
 
 import javax.validation.constraints.NotNull;
-import java.lang.reflect.Field;
 
 public class SaveDocumentHandler extends AbstractDocumentHandler {
 	@Override
 	public void handle(@NotNull Object model, @NotNull DocumentSnapshot documentSnapshot) {
-		Class<?> modelClass = model.getClass();
-		if (!documentSnapshot.exists()) {
-			Field createAtField = UtilFirestore.getCreateAtField(modelClass);
+		handle(model, documentSnapshot.exists());
+	}
+
+	public void handle(@NotNull Object model, boolean exists) {
+		EntityMetadata<?> metadata = EntityMetadataRegistry.getMetadata(model.getClass());
+		if (!exists) {
+			FieldAccessor createAtField = metadata.getCreateAtField();
 			if (createAtField != null) {
 				setCurrentDate(createAtField, model);
 			}
 		}
 
-		Field updateAtField = UtilFirestore.getUpdateAtField(modelClass);
+		FieldAccessor updateAtField = metadata.getUpdateAtField();
 		if (updateAtField != null) {
 			setCurrentDate(updateAtField, model);
 		}
@@ -0,0 +1,302 @@
+package com.victorlh.gcp.spring.libfirestore.mapper;
+
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.annotation.DocumentId;
+import com.google.cloud.firestore.annotation.Exclude;
+import com.google.cloud.firestore.annotation.PropertyName;
+import com.google.cloud.firestore.annotation.ServerTimestamp;
+import com.google.cloud.firestore.annotation.ThrowOnExtraProperties;
+import com.victorlh.gcp.spring.libfirestore.metadata.FieldAccessor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Mapper de un tipo con los accesos a sus propiedades generados una sola vez con {@link LambdaAccessors},
+ * siguiendo las mismas reglas que el mapper del cliente: las propiedades son los getters y campos publicos,
+ * se escriben con el getter o el campo y se leen con el setter o el campo de cualquier visibilidad.
+ * <p>
+ * Solo se crea para los tipos con propiedades de tipos simples, ver {@link ValueConverters}, y sin las anotaciones
+ * PropertyName, Exclude, ServerTimestamp ni ThrowOnExtraProperties. Si un documento no se puede convertir,
+ * p.e. por un valor nulo en un primitivo, ese documento se convierte con el mapper del cliente.
+ */
+@Slf4j
+public class CompiledDocumentMapper<T> implements DocumentMapper<T> {
+
+	private static final List<Class<? extends Annotation>> UNSUPPORTED_ANNOTATIONS = List.of(PropertyName.class, Exclude.class, ServerTimestamp.class);
+
+	private final Class<T> type;
+	private final Supplier<T> constructor;
+	private final Map<String, PropertyReader> readers;
+	private final PropertyWriter[] writers;
+	@Nullable
+	private final FieldAccessor documentIdField;
+
+	private CompiledDocumentMapper(Class<T> type, Supplier<T> constructor, Map<String, PropertyReader> readers, PropertyWriter[] writers,
+								   @Nullable FieldAccessor documentIdField) {
+		this.type = type;
+		this.constructor = constructor;
+		this.readers = readers;
+		this.writers = writers;
+		this.documentIdField = documentIdField;
+	}
+
+	/**
+	 * @param documentIdField - campo {@link DocumentId} del tipo, se rellena al leer y no se escribe
+	 * @return El mapper o null si el tipo tiene que usar el mapper del cliente
+	 */
+	@Nullable
+	public static <T> CompiledDocumentMapper<T> create(@NotNull Class<T> type, @Nullable FieldAccessor documentIdField) {
+		try {
+			return build(type, documentIdField);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			log.debug("Compiled mapper not available for {}, using default mapper", type.getName(), e);
+			return null;
+		}
+	}
+
+	@Nullable
+	private static <T> CompiledDocumentMapper<T> build(Class<T> type, @Nullable FieldAccessor documentIdField) throws ReflectiveOperationException {
+		if (type.isInterface() || Modifier.isAbstract(type.getModifiers()) || type.isEnum() || type.isArray()
+				|| type.getEnclosingClass() != null && !Modifier.isStatic(type.getModifiers()) || hasUnsupportedAnnotations(type)) {
+			return null;
+		}
+		if (documentIdField != null && documentIdField.getType() != String.class && documentIdField.getType() != DocumentReference.class) {
+			return null;
+		}
+
+		Supplier<T> constructor = LambdaAccessors.constructor(lookup(type), type.getDeclaredConstructor());
+		String documentIdName = documentIdField == null ? null : documentIdField.getName();
+
+		// Propiedades: getters publicos y campos publicos, por nombre en minusculas como en el cliente
+		Map<String, String> properties = new HashMap<>();
+		Map<String, PropertyWriter> writers = new LinkedHashMap<>();
+		for (Method method : type.getMethods()) {
+			if (isGetter(method)) {
+				String name = method.getName();
+				String propertyName = propertyName(name, name.startsWith("get") ? "get" : "is");
+				if (!propertyName.isEmpty() && !propertyName.equals(documentIdName) && (!addProperty(properties, propertyName)
+						|| !addWriter(writers, propertyName, method.getGenericReturnType(), LambdaAccessors.getter(lookup(method.getDeclaringClass()), method)))) {
+					return null;
+				}
+			}
+		}
+		for (Field field : type.getFields()) {
+			int modifiers = field.getModifiers();
+			if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.getName().equals(documentIdName)) {
+				continue;
+			}
+			if (!addProperty(properties, field.getName())) {
+				return null;
+			}
+			if (!writers.containsKey(field.getName())
+					&& !addWriter(writers, field.getName(), field.getGenericType(), LambdaAccessors.fieldGetter(lookup(field.getDeclaringClass()), field))) {
+				return null;
+			}
+		}
+
+		// Al leer, como el cliente: setters de cualquier visibilidad y si no el campo de cualquier visibilidad,
+		// solo de las propiedades anteriores y el de la subclase antes que el de la superclase
+		Map<String, PropertyReader> readers = new HashMap<>();
+		Map<String, PropertyReader> fieldReaders = new HashMap<>();
+		Class<?> clazz = type;
+		while (clazz != null && clazz != Object.class) {
+			Set<String> classSetters = new HashSet<>();
+			for (Method method : clazz.getDeclaredMethods()) {
+				if (!isSetter(method)) {
+					continue;
+				}
+				String propertyName = propertyName(method.getName(), "set");
+				if (!isProperty(properties, propertyName)) {
+					continue;
+				}
+				if (!classSetters.add(propertyName)) {
+					// Setters sobrecargados, el cliente falla al convertir
+					return null;
+				}
+				if (!readers.containsKey(propertyName) && !addReader(readers, propertyName, method.getGenericParameterTypes()[0],
+						method.getParameterTypes()[0].isPrimitive(), LambdaAccessors.setter(lookup(clazz), method))) {
+					return null;
+				}
+			}
+			for (Field field : clazz.getDeclaredFields()) {
+				if (Modifier.isStatic(field.getModifiers()) || !isProperty(properties, field.getName()) || fieldReaders.containsKey(field.getName())) {
+					continue;
+				}
+				if (!addReader(fieldReaders, field.getName(), field.getGenericType(), field.getType().isPrimitive(),
+						LambdaAccessors.fieldSetter(lookup(clazz), field))) {
+					return null;
+				}
+			}
+			clazz = clazz.getSuperclass();
+		}
+		fieldReaders.forEach(readers::putIfAbsent);
+
+		return new CompiledDocumentMapper<>(type, constructor, readers, writers.values().toArray(new PropertyWriter[0]), documentIdField);
+	}
+
+	private static boolean isGetter(Method method) {
+		String name = method.getName();
+		return !Modifier.isStatic(method.getModifiers()) && !method.isBridge() && !method.isSynthetic() && method.getDeclaringClass() != Object.class
+				&& method.getParameterCount() == 0 && method.getReturnType() != void.class && (name.startsWith("get") || name.startsWith("is"));
+	}
+
+	private static boolean isSetter(Method method) {
+		return !Modifier.isStatic(method.getModifiers()) && !method.isBridge() && !method.isSynthetic()
+				&& method.getParameterCount() == 1 && method.getName().startsWith("set");
+	}
+
+	/**
+	 * El cliente falla si dos propiedades solo se diferencian en mayusculas, aqui se deja el tipo al mapper del cliente
+	 */
+	private static boolean addProperty(Map<String, String> properties, String name) {
+		String existing = properties.putIfAbsent(name.toLowerCase(Locale.US), name);
+		return existing == null || existing.equals(name);
+	}
+
+	private static boolean isProperty(Map<String, String> properties, String name) {
+		return name.equals(properties.get(name.toLowerCase(Locale.US)));
+	}
+
+	private static MethodHandles.Lookup lookup(Class<?> declaringClass) throws IllegalAccessException {
+		return MethodHandles.privateLookupIn(declaringClass, MethodHandles.lookup());
+	}
+
+	private static boolean addReader(Map<String, PropertyReader> readers, String name, Type propertyType, boolean primitive, BiConsumer<Object, Object> setter) {
+		Function<Object, Object> converter = ValueConverters.reader(propertyType);
+		return converter != null && readers.putIfAbsent(name, new PropertyReader(name, primitive, setter, converter)) == null;
+	}
+
+	private static boolean addWriter(Map<String, PropertyWriter> writers, String name, Type propertyType, Function<Object, Object> getter) {
+		Function<Object, Object> converter = ValueConverters.writer(propertyType);
+		return converter != null && writers.putIfAbsent(name, new PropertyWriter(name, getter, converter)) == null;
+	}
+
+	/**
+	 * Mismo criterio que el cliente: sin prefijo y con las mayusculas iniciales en minuscula, p.e. getURL -> url
+	 */
+	private static String propertyName(String methodName, String prefix) {
+		char[] chars = methodName.substring(prefix.length()).toCharArray();
+		for (int i = 0; i < chars.length && Character.isUpperCase(chars[i]); i++) {
+			chars[i] = Character.toLowerCase(chars[i]);
+		}
+		return new String(chars);
+	}
+
+	private static boolean hasUnsupportedAnnotations(Class<?> type) {
+		Class<?> clazz = type;
+		while (clazz != null && clazz != Object.class) {
+			if (clazz.isAnnotationPresent(ThrowOnExtraProperties.class)) {
+				return true;
+			}
+			for (Field field : clazz.getDeclaredFields()) {
+				if (isAnnotatedWithUnsupported(field)) {
+					return true;
+				}
+			}
+			for (Method method : clazz.getDeclaredMethods()) {
+				if (isAnnotatedWithUnsupported(method) || method.isAnnotationPresent(DocumentId.class)) {
+					return true;
+				}
+			}
+			clazz = clazz.getSuperclass();
+		}
+		return false;
+	}
+
+	private static boolean isAnnotatedWithUnsupported(AnnotatedElement element) {
+		for (Class<? extends Annotation> annotation : UNSUPPORTED_ANNOTATIONS) {
+			if (element.isAnnotationPresent(annotation)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Propiedades que se rellenan al leer un documento, sin el campo {@link DocumentId}
+	 */
+	public Set<String> getPropertyNames() {
+		return Collections.unmodifiableSet(readers.keySet());
+	}
+
+	@Override
+	public T toObject(@NotNull DocumentSnapshot documentSnapshot) {
+		try {
+			T model = constructor.get();
+			Map<String, Object> data = documentSnapshot.getData();
+			if (data != null) {
+				for (Map.Entry<String, Object> entry : data.entrySet()) {
+					PropertyReader reader = readers.get(entry.getKey());
+					if (reader != null) {
+						reader.read(model, entry.getValue());
+					}
+				}
+			}
+			if (documentIdField != null) {
+				documentIdField.set(model, documentIdField.getType() == String.class ? documentSnapshot.getId() : documentSnapshot.getReference());
+			}
+			return model;
+		} catch (RuntimeException e) {
+			log.debug("Compiled mapper failed for {}, using default mapper", documentSnapshot.getReference().getPath(), e);
+			return documentSnapshot.toObject(type);
+		}
+	}
+
+	@Override
+	public Map<String, Object> toMap(@NotNull T model) {
+		Map<String, Object> data = new HashMap<>((int) (writers.length / 0.75f) + 1);
+		for (PropertyWriter writer : writers) {
+			Object value = writer.getter.apply(model);
+			data.put(writer.name, value == null ? null : writer.converter.apply(value));
+		}
+		return data;
+	}
+
+	@RequiredArgsConstructor
+	private static class PropertyReader {
+		private final String name;
+		private final boolean primitive;
+		private final BiConsumer<Object, Object> setter;
+		private final Function<Object, Object> converter;
+
+		void read(Object model, @Nullable Object value) {
+			if (value == null) {
+				if (primitive) {
+					throw new IllegalArgumentException("Valor nulo para la propiedad primitiva " + name);
+				}
+				setter.accept(model, null);
+			} else {
+				setter.accept(model, converter.apply(value));
+			}
+		}
+	}
+
+	@RequiredArgsConstructor
+	private static class PropertyWriter {
+		private final String name;
+		private final Function<Object, Object> getter;
+		private final Function<Object, Object> converter;
+	}
+}
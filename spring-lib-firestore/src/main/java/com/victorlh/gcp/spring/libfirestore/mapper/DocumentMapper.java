@@ -0,0 +1,23 @@
+package com.victorlh.gcp.spring.libfirestore.mapper;
+
+import com.google.cloud.firestore.DocumentSnapshot;
+
+import javax.validation.constraints.NotNull;
+import java.util.Map;
+
+/**
+ * Conversion entre documentos y modelos de un tipo, sustituye al mapper por reflexion del cliente de Firestore.
+ * Por defecto se usa {@link CompiledDocumentMapper} si el tipo lo admite.
+ */
+public interface DocumentMapper<T> {
+
+	/**
+	 * @param documentSnapshot - documento existente
+	 */
+	T toObject(@NotNull DocumentSnapshot documentSnapshot);
+
+	/**
+	 * Campos a escribir del modelo, sin el campo {@link com.google.cloud.firestore.annotation.DocumentId}
+	 */
+	Map<String, Object> toMap(@NotNull T model);
+}
@@ -0,0 +1,96 @@
+package com.victorlh.gcp.spring.libfirestore.mapper;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Genera lambdas con {@link LambdaMetafactory} para los getters, setters y el constructor del modelo.
+ * Si la clase no se puede enlazar desde aqui (p.e. esta en otro class loader) se usa el {@link MethodHandle} directamente.
+ */
+final class LambdaAccessors {
+
+	private LambdaAccessors() {
+	}
+
+	@SuppressWarnings("unchecked")
+	static <T> Supplier<T> constructor(MethodHandles.Lookup lookup, Constructor<T> constructor) throws IllegalAccessException {
+		MethodHandle handle = lookup.unreflectConstructor(constructor);
+		try {
+			CallSite callSite = LambdaMetafactory.metafactory(lookup, "get", MethodType.methodType(Supplier.class),
+					MethodType.methodType(Object.class), handle, handle.type());
+			return (Supplier<T>) callSite.getTarget().invokeExact();
+		} catch (Throwable e) {
+			MethodHandle generic = handle.asType(MethodType.methodType(Object.class));
+			return () -> (T) invoke(() -> generic.invokeExact());
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	static Function<Object, Object> getter(MethodHandles.Lookup lookup, Method method) throws IllegalAccessException {
+		MethodHandle handle = lookup.unreflect(method);
+		try {
+			CallSite callSite = LambdaMetafactory.metafactory(lookup, "apply", MethodType.methodType(Function.class),
+					MethodType.methodType(Object.class, Object.class), handle, handle.type().wrap());
+			return (Function<Object, Object>) callSite.getTarget().invokeExact();
+		} catch (Throwable e) {
+			MethodHandle generic = handle.asType(MethodType.methodType(Object.class, Object.class));
+			return model -> invoke(() -> generic.invokeExact(model));
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	static BiConsumer<Object, Object> setter(MethodHandles.Lookup lookup, Method method) throws IllegalAccessException {
+		MethodHandle handle = lookup.unreflect(method);
+		try {
+			CallSite callSite = LambdaMetafactory.metafactory(lookup, "accept", MethodType.methodType(BiConsumer.class),
+					MethodType.methodType(void.class, Object.class, Object.class), handle, handle.type().wrap().changeReturnType(void.class));
+			return (BiConsumer<Object, Object>) callSite.getTarget().invokeExact();
+		} catch (Throwable e) {
+			MethodHandle generic = handle.asType(MethodType.methodType(void.class, Object.class, Object.class));
+			return (model, value) -> invoke(() -> {
+				generic.invokeExact(model, value);
+				return null;
+			});
+		}
+	}
+
+	/**
+	 * Los accesos a campos no admiten {@link LambdaMetafactory}, se invoca el {@link MethodHandle} ya adaptado
+	 */
+	static Function<Object, Object> fieldGetter(MethodHandles.Lookup lookup, Field field) throws IllegalAccessException {
+		MethodHandle generic = lookup.unreflectGetter(field).asType(MethodType.methodType(Object.class, Object.class));
+		return model -> invoke(() -> generic.invokeExact(model));
+	}
+
+	static BiConsumer<Object, Object> fieldSetter(MethodHandles.Lookup lookup, Field field) throws IllegalAccessException {
+		MethodHandle generic = lookup.unreflectSetter(field).asType(MethodType.methodType(void.class, Object.class, Object.class));
+		return (model, value) -> invoke(() -> {
+			generic.invokeExact(model, value);
+			return null;
+		});
+	}
+
+	private static Object invoke(HandleCall call) {
+		try {
+			return call.call();
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@FunctionalInterface
+	private interface HandleCall {
+		Object call() throws Throwable;
+	}
+}
@@ -0,0 +1,122 @@
+package com.victorlh.gcp.spring.libfirestore.mapper;
+
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.Blob;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.GeoPoint;
+import com.google.cloud.firestore.annotation.PropertyName;
+
+import javax.annotation.Nullable;
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Conversiones precalculadas por tipo de propiedad entre los valores que devuelve el snapshot y los del modelo.
+ * Solo cubre los tipos que el cliente ya sabe codificar sin el mapper de clases; para el resto devuelve null
+ * y el tipo completo se queda con el mapper del cliente.
+ */
+final class ValueConverters {
+
+	/**
+	 * Tipos que el snapshot devuelve tal cual y que se pueden escribir sin convertir
+	 */
+	private static final Set<Class<?>> NATIVE_TYPES = Set.of(Object.class, String.class, Boolean.class, Long.class, Double.class,
+			Timestamp.class, Blob.class, GeoPoint.class, DocumentReference.class);
+	/**
+	 * Elementos de List/Map que se pueden pasar sin copiar; los numericos no porque el snapshot mezcla Long y Double
+	 */
+	private static final Set<Class<?>> CONTAINER_ELEMENT_TYPES = Set.of(Object.class, String.class, Boolean.class,
+			Timestamp.class, Blob.class, GeoPoint.class, DocumentReference.class);
+
+	private ValueConverters() {
+	}
+
+	/**
+	 * @return Conversion del valor no nulo del snapshot al tipo de la propiedad
+	 */
+	@Nullable
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	static Function<Object, Object> reader(Type type) {
+		if (type instanceof ParameterizedType) {
+			return isNativeContainer((ParameterizedType) type) ? Function.identity() : null;
+		}
+		if (!(type instanceof Class)) {
+			return null;
+		}
+
+		Class<?> clazz = (Class<?>) type;
+		if (clazz == long.class || clazz == Long.class) {
+			return value -> ((Number) value).longValue();
+		}
+		if (clazz == double.class || clazz == Double.class) {
+			return value -> ((Number) value).doubleValue();
+		}
+		if (NATIVE_TYPES.contains(clazz) || clazz == boolean.class) {
+			return Function.identity();
+		}
+		if (clazz == int.class || clazz == Integer.class) {
+			return value -> Math.toIntExact(((Number) value).longValue());
+		}
+		if (clazz == float.class || clazz == Float.class) {
+			return value -> ((Number) value).floatValue();
+		}
+		if (clazz == Date.class) {
+			return value -> value instanceof Timestamp ? ((Timestamp) value).toDate() : value;
+		}
+		if (clazz.isEnum() && !hasPropertyNames(clazz)) {
+			Class<? extends Enum> enumType = (Class<? extends Enum>) clazz;
+			return value -> Enum.valueOf(enumType, (String) value);
+		}
+		return null;
+	}
+
+	@Nullable
+	static Function<Object, Object> writer(Type type) {
+		if (type instanceof ParameterizedType) {
+			return isNativeContainer((ParameterizedType) type) ? Function.identity() : null;
+		}
+		if (!(type instanceof Class)) {
+			return null;
+		}
+
+		Class<?> clazz = (Class<?>) type;
+		if (NATIVE_TYPES.contains(clazz) || clazz.isPrimitive() && clazz != char.class && clazz != byte.class && clazz != short.class
+				|| clazz == Integer.class || clazz == Float.class || clazz == Date.class) {
+			return Function.identity();
+		}
+		if (clazz.isEnum() && !hasPropertyNames(clazz)) {
+			return value -> ((Enum<?>) value).name();
+		}
+		return null;
+	}
+
+	/**
+	 * List o Map con clave String de {@link #CONTAINER_ELEMENT_TYPES}, el snapshot ya los devuelve con esa forma
+	 */
+	private static boolean isNativeContainer(ParameterizedType type) {
+		Type rawType = type.getRawType();
+		Type[] arguments = type.getActualTypeArguments();
+		if (rawType == List.class) {
+			return CONTAINER_ELEMENT_TYPES.contains(arguments[0]);
+		}
+		if (rawType == Map.class) {
+			return arguments[0] == String.class && CONTAINER_ELEMENT_TYPES.contains(arguments[1]);
+		}
+		return false;
+	}
+
+	private static boolean hasPropertyNames(Class<?> enumType) {
+		for (Field field : enumType.getFields()) {
+			if (field.isEnumConstant() && field.isAnnotationPresent(PropertyName.class)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
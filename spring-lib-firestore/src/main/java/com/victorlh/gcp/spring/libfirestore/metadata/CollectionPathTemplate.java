@@ -0,0 +1,85 @@
+package com.victorlh.gcp.spring.libfirestore.metadata;
+
+import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.Firestore;
+import lombok.Getter;
+import org.apache.commons.lang3.StringUtils;
+
+import javax.validation.constraints.NotNull;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ruta de coleccion ya parseada, p.e. <code>users/{userId}/orders</code>.
+ * Los segmentos entre llaves se sustituyen por los valores recibidos en orden.
+ */
+public class CollectionPathTemplate {
+
+	private static final Map<String, CollectionPathTemplate> TEMPLATES = new ConcurrentHashMap<>();
+
+	@Getter
+	private final String path;
+	private final String[] segments;
+	private final boolean[] variables;
+	@Getter
+	private final int variableCount;
+
+	private CollectionPathTemplate(String path) {
+		String[] pathSegments = StringUtils.split(path, "/");
+		if (pathSegments == null || pathSegments.length == 0) {
+			throw new IllegalArgumentException("Formato de collectionPath invalido");
+		}
+
+		boolean[] pathVariables = new boolean[pathSegments.length];
+		int count = 0;
+		boolean previousIsCollection = false;
+		for (int i = 0; i < pathSegments.length; i++) {
+			String pathSegment = pathSegments[i];
+			boolean variable = StringUtils.startsWith(pathSegment, "{") && StringUtils.endsWith(pathSegment, "}");
+			if (variable) {
+				if (!previousIsCollection) {
+					throw new IllegalArgumentException("Formato de collectionPath invalido");
+				}
+				count++;
+			}
+			pathVariables[i] = variable;
+			previousIsCollection = !variable;
+		}
+
+		if (!previousIsCollection) {
+			throw new IllegalArgumentException("Formato de collectionPath invalido");
+		}
+
+		this.path = path;
+		this.segments = pathSegments;
+		this.variables = pathVariables;
+		this.variableCount = count;
+	}
+
+	public static CollectionPathTemplate of(@NotNull String path) {
+		return TEMPLATES.computeIfAbsent(path, CollectionPathTemplate::new);
+	}
+
+	public CollectionReference resolve(@NotNull Firestore firestore, String... pathValues) {
+		int valueIndex = 0;
+		CollectionReference collectionReference = null;
+		DocumentReference document = null;
+		for (int i = 0; i < segments.length; i++) {
+			if (variables[i]) {
+				String value = pathValues != null && valueIndex < pathValues.length ? pathValues[valueIndex] : null;
+				valueIndex++;
+				if (StringUtils.isBlank(value)) {
+					throw new IllegalArgumentException("El numero de argumentos no es valido");
+				}
+				document = collectionReference.document(value);
+			} else if (document == null) {
+				collectionReference = firestore.collection(segments[i]);
+			} else {
+				collectionReference = document.collection(segments[i]);
+				document = null;
+			}
+		}
+		return collectionReference;
+	}
+}
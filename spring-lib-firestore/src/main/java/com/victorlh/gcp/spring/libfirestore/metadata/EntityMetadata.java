@@ -0,0 +1,91 @@
+package com.victorlh.gcp.spring.libfirestore.metadata;
+
+import com.google.cloud.firestore.annotation.DocumentId;
+import com.victorlh.gcp.spring.libfirestore.anotations.CollectionName;
+import com.victorlh.gcp.spring.libfirestore.anotations.CreateAt;
+import com.victorlh.gcp.spring.libfirestore.anotations.OrderBy;
+import com.victorlh.gcp.spring.libfirestore.anotations.UpdateAt;
+import com.victorlh.gcp.spring.libfirestore.mapper.CompiledDocumentMapper;
+import com.victorlh.gcp.spring.libfirestore.mapper.DocumentMapper;
+import lombok.Getter;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Metadatos de un tipo de documento. Se construyen una unica vez por clase desde {@link EntityMetadataRegistry}
+ */
+@Getter
+public class EntityMetadata<T> {
+
+	private final Class<T> type;
+	@Nullable
+	private final String collectionName;
+	@Nullable
+	private final CollectionPathTemplate collectionPath;
+	@Nullable
+	private final FieldAccessor documentIdField;
+	@Nullable
+	private final FieldAccessor createAtField;
+	@Nullable
+	private final FieldAccessor updateAtField;
+	@Nullable
+	private final FieldAccessor orderByField;
+	/**
+	 * Null si el tipo no admite {@link CompiledDocumentMapper} y se usa el mapper del cliente
+	 */
+	@Nullable
+	private final DocumentMapper<T> documentMapper;
+
+	EntityMetadata(@NotNull Class<T> type) {
+		this.type = type;
+		CollectionName collectionNameAnnotation = type.getAnnotation(CollectionName.class);
+		this.collectionName = collectionNameAnnotation == null ? null : collectionNameAnnotation.value();
+		this.collectionPath = collectionName == null ? null : CollectionPathTemplate.of(collectionName);
+		this.documentIdField = findField(type, DocumentId.class);
+		this.createAtField = findDateField(type, CreateAt.class);
+		this.updateAtField = findDateField(type, UpdateAt.class);
+		this.orderByField = findField(type, OrderBy.class);
+		this.documentMapper = CompiledDocumentMapper.create(type, documentIdField);
+	}
+
+	public String getDocumentId(@NotNull Object model) {
+		Object key = documentIdField == null ? null : documentIdField.get(model);
+		if (key == null) {
+			return UUID.randomUUID().toString();
+		}
+		return String.valueOf(key);
+	}
+
+	@Nullable
+	public String getOrderByName() {
+		return orderByField == null ? null : orderByField.getName();
+	}
+
+	@Nullable
+	private static FieldAccessor findField(Class<?> type, Class<? extends Annotation> annotation) {
+		Class<?> clazz = type;
+		while (clazz != null && clazz != Object.class) {
+			for (Field field : clazz.getDeclaredFields()) {
+				if (field.isAnnotationPresent(annotation)) {
+					return new FieldAccessor(field);
+				}
+			}
+			clazz = clazz.getSuperclass();
+		}
+		return null;
+	}
+
+	@Nullable
+	private static FieldAccessor findDateField(Class<?> type, Class<? extends Annotation> annotation) {
+		FieldAccessor fieldAccessor = findField(type, annotation);
+		if (fieldAccessor != null && !fieldAccessor.getType().isAssignableFrom(Date.class)) {
+			throw new IllegalArgumentException("El campo fecha tiene que ser de tipo java.util.Date");
+		}
+		return fieldAccessor;
+	}
+}
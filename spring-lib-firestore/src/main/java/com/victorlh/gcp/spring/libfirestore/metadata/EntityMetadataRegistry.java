@@ -0,0 +1,18 @@
+package com.victorlh.gcp.spring.libfirestore.metadata;
+
+import javax.validation.constraints.NotNull;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class EntityMetadataRegistry {
+
+	private static final Map<Class<?>, EntityMetadata<?>> METADATA = new ConcurrentHashMap<>(64);
+
+	private EntityMetadataRegistry() {
+	}
+
+	@SuppressWarnings("unchecked")
+	public static <T> EntityMetadata<T> getMetadata(@NotNull Class<T> type) {
+		return (EntityMetadata<T>) METADATA.computeIfAbsent(type, EntityMetadata::new);
+	}
+}
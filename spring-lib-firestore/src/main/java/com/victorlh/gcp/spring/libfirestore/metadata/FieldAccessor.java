@@ -0,0 +1,41 @@
+package com.victorlh.gcp.spring.libfirestore.metadata;
+
+import lombok.Getter;
+
+import javax.validation.constraints.NotNull;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Field;
+
+/**
+ * Acceso directo a un campo del modelo mediante {@link VarHandle}, resuelto una sola vez
+ */
+@Getter
+public class FieldAccessor {
+
+	private final String name;
+	private final Class<?> type;
+	private final Field field;
+	private final VarHandle varHandle;
+
+	FieldAccessor(@NotNull Field field) {
+		this.name = field.getName();
+		this.type = field.getType();
+		this.field = field;
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(field.getDeclaringClass(), MethodHandles.lookup());
+			this.varHandle = lookup.unreflectVarHandle(field);
+		} catch (IllegalAccessException e) {
+			String error = String.format("No se puede acceder al campo %s de %s", field.getName(), field.getDeclaringClass().getName());
+			throw new IllegalArgumentException(error, e);
+		}
+	}
+
+	public Object get(@NotNull Object model) {
+		return varHandle.get(model);
+	}
+
+	public void set(@NotNull Object model, Object value) {
+		varHandle.set(model, value);
+	}
+}
@@ -0,0 +1,89 @@
+package com.victorlh.gcp.spring.libfirestore.metrics;
+
+import com.google.api.core.ApiFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.victorlh.gcp.spring.libfirestore.cache.DocumentCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timer firestore.repository.operation con tags collection, operation y outcome (success/error),
+ * y contadores de la cache de documentos con tag collection.
+ */
+@RequiredArgsConstructor
+public class MicrometerRepositoryMetrics implements RepositoryMetrics {
+
+	public static final String OPERATION_TIMER = "firestore.repository.operation";
+	public static final String CACHE_PREFIX = "firestore.repository.cache";
+
+	private final MeterRegistry meterRegistry;
+
+	/**
+	 * Timers ya registrados por coleccion y operacion, para no buscarlos en el registry en cada operacion
+	 */
+	private final Map<String, Map<String, OperationTimers>> operationTimers = new ConcurrentHashMap<>();
+
+	@Override
+	public <Z> ApiFuture<Z> record(String collection, String operation, long startNanos, ApiFuture<Z> future) {
+		future.addListener(() -> {
+			long elapsed = System.nanoTime() - startNanos;
+			OperationTimers timers = operationTimers.computeIfAbsent(collection, key -> new ConcurrentHashMap<>())
+					.computeIfAbsent(operation, key -> new OperationTimers(operationTimer(collection, key, "success"), operationTimer(collection, key, "error")));
+			(isSuccess(future) ? timers.success : timers.error).record(elapsed, TimeUnit.NANOSECONDS);
+		}, MoreExecutors.directExecutor());
+		return future;
+	}
+
+	@Override
+	public void bindCache(String collection, DocumentCache documentCache) {
+		FunctionCounter.builder(CACHE_PREFIX + ".hits", documentCache, cache -> cache.getStats().getHitCount())
+				.tag("collection", collection)
+				.register(meterRegistry);
+		FunctionCounter.builder(CACHE_PREFIX + ".misses", documentCache, cache -> cache.getStats().getMissCount())
+				.tag("collection", collection)
+				.register(meterRegistry);
+		FunctionCounter.builder(CACHE_PREFIX + ".evictions", documentCache, cache -> cache.getStats().getEvictionCount())
+				.tag("collection", collection)
+				.register(meterRegistry);
+		Gauge.builder(CACHE_PREFIX + ".size", documentCache, cache -> cache.getStats().getSize())
+				.tag("collection", collection)
+				.register(meterRegistry);
+	}
+
+	private Timer operationTimer(String collection, String operation, String outcome) {
+		return Timer.builder(OPERATION_TIMER)
+				.tag("collection", collection)
+				.tag("operation", operation)
+				.tag("outcome", outcome)
+				.register(meterRegistry);
+	}
+
+	private static boolean isSuccess(ApiFuture<?> future) {
+		if (future.isCancelled()) {
+			return false;
+		}
+		try {
+			future.get();
+			return true;
+		} catch (ExecutionException e) {
+			return false;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	@RequiredArgsConstructor
+	private static class OperationTimers {
+		private final Timer success;
+		private final Timer error;
+	}
+}
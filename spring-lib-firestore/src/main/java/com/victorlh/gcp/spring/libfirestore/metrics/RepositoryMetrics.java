@@ -0,0 +1,26 @@
+package com.victorlh.gcp.spring.libfirestore.metrics;
+
+import com.google.api.core.ApiFuture;
+import com.victorlh.gcp.spring.libfirestore.cache.DocumentCache;
+
+/**
+ * Metricas de los repositorios. Si Micrometer esta en el classpath se registra {@link MicrometerRepositoryMetrics},
+ * si no los repositorios usan {@link #NOOP}.
+ */
+public interface RepositoryMetrics {
+
+	RepositoryMetrics NOOP = new RepositoryMetrics() {
+	};
+
+	/**
+	 * Registra la duracion de la operacion desde startNanos hasta que se completa el futuro
+	 *
+	 * @return El mismo futuro
+	 */
+	default <Z> ApiFuture<Z> record(String collection, String operation, long startNanos, ApiFuture<Z> future) {
+		return future;
+	}
+
+	default void bindCache(String collection, DocumentCache documentCache) {
+	}
+}
@@ -0,0 +1,137 @@
+package com.victorlh.gcp.spring.libfirestore.replica;
+
+import com.google.cloud.firestore.DocumentChange;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FirestoreException;
+import com.google.cloud.firestore.ListenerRegistration;
+import com.google.cloud.firestore.Query;
+import com.google.cloud.firestore.QuerySnapshot;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Replica en memoria de una query, indexada por id de documento y actualizada con los cambios incrementales
+ * del snapshot listener. Las lecturas no hacen ninguna llamada a Firestore.
+ */
+@Slf4j
+public class CollectionReplica<T> implements AutoCloseable {
+
+	private final Query query;
+	private final Function<DocumentSnapshot, T> mapper;
+	private final Map<String, DocumentSnapshot> documents = new ConcurrentHashMap<>();
+	private final CompletableFuture<Void> ready = new CompletableFuture<>();
+
+	private volatile ListenerRegistration listenerRegistration;
+	private volatile boolean active;
+	private volatile boolean failed;
+	private boolean closed;
+
+	public CollectionReplica(@NotNull Query query, @NotNull Function<DocumentSnapshot, T> mapper) {
+		this.query = query;
+		this.mapper = mapper;
+	}
+
+	public synchronized void start() {
+		if (closed) {
+			throw new IllegalStateException("La replica esta cerrada");
+		}
+		if (listenerRegistration == null) {
+			active = true;
+			listenerRegistration = query.addSnapshotListener(this::onEvent);
+		}
+	}
+
+	private void onEvent(@Nullable QuerySnapshot querySnapshot, @Nullable FirestoreException error) {
+		if (error != null) {
+			log.error("Replica listener of {} stopped", query, error);
+			active = false;
+			failed = true;
+			ready.completeExceptionally(error);
+			return;
+		}
+		if (querySnapshot == null) {
+			return;
+		}
+
+		for (DocumentChange documentChange : querySnapshot.getDocumentChanges()) {
+			DocumentSnapshot document = documentChange.getDocument();
+			if (documentChange.getType() == DocumentChange.Type.REMOVED) {
+				documents.remove(document.getId());
+			} else {
+				documents.put(document.getId(), document);
+			}
+		}
+
+		if (ready.complete(null)) {
+			log.info("Replica of {} ready with {} documents", query, documents.size());
+		}
+	}
+
+	/**
+	 * @return true si se ha cargado el snapshot inicial y el listener sigue activo
+	 */
+	public boolean isReady() {
+		return active && ready.isDone() && !ready.isCompletedExceptionally();
+	}
+
+	/**
+	 * @return true si el listener se ha parado por un error; la replica ya no se actualiza y hay que crear otra
+	 */
+	public boolean isFailed() {
+		return failed;
+	}
+
+	public CompletableFuture<Void> getReadyFuture() {
+		return ready;
+	}
+
+	public boolean awaitReady(@NotNull Duration timeout) throws InterruptedException {
+		try {
+			ready.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+			return isReady();
+		} catch (ExecutionException | TimeoutException e) {
+			return false;
+		}
+	}
+
+	public Optional<T> findById(@NotNull String documentId) {
+		DocumentSnapshot documentSnapshot = documents.get(documentId);
+		return documentSnapshot == null ? Optional.empty() : Optional.ofNullable(mapper.apply(documentSnapshot));
+	}
+
+	public List<T> findAll() {
+		return documents.values().stream()
+				.map(mapper)
+				.filter(Objects::nonNull)
+				.collect(Collectors.toList());
+	}
+
+	public int size() {
+		return documents.size();
+	}
+
+	@Override
+	public synchronized void close() {
+		closed = true;
+		active = false;
+		if (listenerRegistration != null) {
+			listenerRegistration.remove();
+			listenerRegistration = null;
+		}
+		documents.clear();
+	}
+}
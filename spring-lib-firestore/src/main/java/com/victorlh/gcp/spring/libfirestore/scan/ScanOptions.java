@@ -0,0 +1,34 @@
+package com.victorlh.gcp.spring.libfirestore.scan;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.function.Consumer;
+
+@Builder
+@Getter
+@ToString
+public class ScanOptions {
+
+	public static final ScanOptions DEFAULT = ScanOptions.builder().build();
+
+	/**
+	 * Hilos del pool que procesa las particiones, por defecto el numero de procesadores
+	 */
+	private final Integer parallelism;
+	/**
+	 * Particiones que se piden a Firestore, por defecto 4 por hilo. Firestore puede devolver menos
+	 */
+	private final Long partitionCount;
+	/**
+	 * Documentos por lectura dentro de cada particion
+	 */
+	private final Integer chunkSize;
+	/**
+	 * Se llama tras cada bloque leido y al terminar cada particion, desde los hilos del pool
+	 */
+	@ToString.Exclude
+	private final Consumer<ScanProgress> progressListener;
+
+}
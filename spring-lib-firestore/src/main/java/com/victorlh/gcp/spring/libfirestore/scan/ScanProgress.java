@@ -0,0 +1,31 @@
+package com.victorlh.gcp.spring.libfirestore.scan;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import java.time.Duration;
+
+/**
+ * Estado de un recorrido por particiones en un instante; el resultado final del recorrido es el ultimo
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class ScanProgress {
+
+	private final int partitions;
+	private final int completedPartitions;
+	private final long documents;
+	private final Duration elapsed;
+
+	public boolean isCompleted() {
+		return completedPartitions == partitions;
+	}
+
+	@ToString.Include(name = "documentsPerSecond")
+	public double getDocumentsPerSecond() {
+		long elapsedNanos = elapsed.toNanos();
+		return elapsedNanos == 0 ? 0 : documents * 1_000_000_000d / elapsedNanos;
+	}
+}
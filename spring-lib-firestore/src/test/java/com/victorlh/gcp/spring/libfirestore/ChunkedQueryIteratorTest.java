@@ -0,0 +1,111 @@
+package com.victorlh.gcp.spring.libfirestore;
+
+import com.google.api.core.ApiFutures;
+import com.google.cloud.firestore.FieldPath;
+import com.google.cloud.firestore.Query;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.QuerySnapshot;
+import com.google.firestore.v1.RunQueryRequest;
+import com.google.firestore.v1.StructuredQuery;
+import com.google.protobuf.Int32Value;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ChunkedQueryIteratorTest {
+
+	@Test
+	void callerLimitCapsTheStream() {
+		Query query = mockQuery(StructuredQuery.newBuilder().setLimit(Int32Value.of(10)).build());
+		Query nextQuery = mock(Query.class);
+		when(query.startAfter(any(QueryDocumentSnapshot.class))).thenReturn(nextQuery);
+		Query firstChunk = chunkQuery(4);
+		when(query.limit(4)).thenReturn(firstChunk);
+		Query secondChunk = chunkQuery(4);
+		when(nextQuery.limit(4)).thenReturn(secondChunk);
+		Query lastChunk = chunkQuery(2);
+		when(nextQuery.limit(2)).thenReturn(lastChunk);
+
+		List<QueryDocumentSnapshot> documents = readAll(new ChunkedQueryIterator(query, 4));
+
+		assertThat(documents).hasSize(10);
+		verify(query).limit(4);
+		verify(nextQuery).limit(4);
+		verify(nextQuery).limit(2);
+	}
+
+	@Test
+	void callerOrderIsKeptAndPagedWithCursor() {
+		StructuredQuery structuredQuery = StructuredQuery.newBuilder()
+				.addOrderBy(StructuredQuery.Order.newBuilder()
+						.setField(StructuredQuery.FieldReference.newBuilder().setFieldPath("score"))
+						.setDirection(StructuredQuery.Direction.DESCENDING))
+				.build();
+		Query query = mockQuery(structuredQuery);
+		Query nextQuery = mock(Query.class);
+		Query firstChunk = chunkQuery(3);
+		when(query.limit(3)).thenReturn(firstChunk);
+		when(query.startAfter(any(QueryDocumentSnapshot.class))).thenReturn(nextQuery);
+		Query lastChunk = chunkQuery(1);
+		when(nextQuery.limit(3)).thenReturn(lastChunk);
+
+		List<QueryDocumentSnapshot> documents = readAll(new ChunkedQueryIterator(query, 3));
+
+		assertThat(documents).hasSize(4);
+		verify(query, never()).orderBy(any(FieldPath.class));
+		verify(query, never()).orderBy(any(String.class));
+		verify(nextQuery, never()).orderBy(any(FieldPath.class));
+		verify(nextQuery, never()).offset(anyInt());
+	}
+
+	@Test
+	void offsetOnlyAppliesToTheFirstChunk() {
+		Query query = mockQuery(StructuredQuery.newBuilder().setOffset(5).build());
+		Query nextQuery = mock(Query.class);
+		Query nextQueryWithoutOffset = mock(Query.class);
+		Query firstChunk = chunkQuery(2);
+		when(query.limit(2)).thenReturn(firstChunk);
+		when(query.startAfter(any(QueryDocumentSnapshot.class))).thenReturn(nextQuery);
+		when(nextQuery.offset(0)).thenReturn(nextQueryWithoutOffset);
+		Query lastChunk = chunkQuery(0);
+		when(nextQueryWithoutOffset.limit(2)).thenReturn(lastChunk);
+
+		List<QueryDocumentSnapshot> documents = readAll(new ChunkedQueryIterator(query, 2));
+
+		assertThat(documents).hasSize(2);
+		verify(nextQuery).offset(0);
+	}
+
+	private static Query mockQuery(StructuredQuery structuredQuery) {
+		Query query = mock(Query.class);
+		when(query.toProto()).thenReturn(RunQueryRequest.newBuilder().setStructuredQuery(structuredQuery).build());
+		return query;
+	}
+
+	private static Query chunkQuery(int size) {
+		List<QueryDocumentSnapshot> documents = new ArrayList<>();
+		for (int i = 0; i < size; i++) {
+			documents.add(mock(QueryDocumentSnapshot.class));
+		}
+		QuerySnapshot querySnapshot = mock(QuerySnapshot.class);
+		when(querySnapshot.getDocuments()).thenReturn(documents);
+		Query query = mock(Query.class);
+		when(query.get()).thenReturn(ApiFutures.immediateFuture(querySnapshot));
+		return query;
+	}
+
+	private static List<QueryDocumentSnapshot> readAll(ChunkedQueryIterator iterator) {
+		List<QueryDocumentSnapshot> documents = new ArrayList<>();
+		iterator.forEachRemaining(documents::add);
+		return documents;
+	}
+}
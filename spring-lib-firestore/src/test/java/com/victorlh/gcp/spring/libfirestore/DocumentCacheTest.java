@@ -0,0 +1,124 @@
+package com.victorlh.gcp.spring.libfirestore;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.SettableApiFuture;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.WriteResult;
+import com.google.cloud.firestore.annotation.DocumentId;
+import com.victorlh.gcp.spring.libfirestore.anotations.CachedCollection;
+import com.victorlh.gcp.spring.libfirestore.anotations.CollectionName;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Constructor;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DocumentCacheTest {
+
+	private static final String DOCUMENT_PATH = "items/a";
+
+	private final SettableApiFuture<DocumentSnapshot> readApiFuture = SettableApiFuture.create();
+	private final SettableApiFuture<WriteResult> deleteApiFuture = SettableApiFuture.create();
+	private DocumentReference documentReference;
+	private CachedItemRepository repository;
+
+	@BeforeEach
+	void setUp() {
+		Firestore firestore = mock(Firestore.class);
+		CollectionReference collectionReference = mock(CollectionReference.class);
+		documentReference = mock(DocumentReference.class);
+		when(firestore.collection("items")).thenReturn(collectionReference);
+		when(collectionReference.document("a")).thenReturn(documentReference);
+		when(documentReference.getPath()).thenReturn(DOCUMENT_PATH);
+		when(documentReference.get()).thenReturn(readApiFuture);
+		when(documentReference.delete()).thenReturn(deleteApiFuture);
+		repository = new CachedItemRepository(firestore);
+	}
+
+	@Test
+	void readCompletedAfterWriteIsNotCached() throws Exception {
+		ApiFuture<Optional<CachedItem>> readResult = repository.findByReferenceAsync(documentReference);
+		ApiFuture<WriteResult> deleteResult = repository.deleteAsync(new CachedItem("a", "deleted"));
+		deleteApiFuture.set(writeResult());
+		deleteResult.get();
+
+		readApiFuture.set(snapshot("stale"));
+
+		assertThat(readResult.get()).map(CachedItem::getName).contains("stale");
+		assertThat(repository.getDocumentCache().get(DOCUMENT_PATH)).isNull();
+	}
+
+	@Test
+	void readWithoutConcurrentWriteIsCached() throws Exception {
+		ApiFuture<Optional<CachedItem>> readResult = repository.findByReferenceAsync(documentReference);
+		readApiFuture.set(snapshot("current"));
+
+		assertThat(readResult.get()).map(CachedItem::getName).contains("current");
+		assertThat(repository.getDocumentCache().get(DOCUMENT_PATH)).isNotNull();
+	}
+
+	/**
+	 * WriteResult es final y solo se construye dentro del cliente
+	 */
+	private static WriteResult writeResult() throws ReflectiveOperationException {
+		Constructor<WriteResult> constructor = WriteResult.class.getDeclaredConstructor(Timestamp.class);
+		constructor.setAccessible(true);
+		return constructor.newInstance(Timestamp.now());
+	}
+
+	private DocumentSnapshot snapshot(String name) {
+		DocumentSnapshot documentSnapshot = mock(DocumentSnapshot.class);
+		when(documentSnapshot.exists()).thenReturn(true);
+		when(documentSnapshot.getId()).thenReturn("a");
+		when(documentSnapshot.getReference()).thenReturn(documentReference);
+		when(documentSnapshot.getData()).thenReturn(Map.of("name", name));
+		return documentSnapshot;
+	}
+
+	@CollectionName("items")
+	@CachedCollection
+	public static class CachedItem {
+		@DocumentId
+		private String id;
+		private String name;
+
+		public CachedItem() {
+		}
+
+		CachedItem(String id, String name) {
+			this.id = id;
+			this.name = name;
+		}
+
+		public String getId() {
+			return id;
+		}
+
+		public void setId(String id) {
+			this.id = id;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+	}
+
+	static class CachedItemRepository extends AbstractFirestoreRepository<CachedItem> {
+		CachedItemRepository(Firestore firestore) {
+			super(firestore);
+		}
+	}
+}
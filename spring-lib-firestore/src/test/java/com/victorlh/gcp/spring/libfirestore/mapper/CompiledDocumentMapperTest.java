@@ -0,0 +1,104 @@
+package com.victorlh.gcp.spring.libfirestore.mapper;
+
+import com.google.cloud.firestore.DocumentSnapshot;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CompiledDocumentMapperTest {
+
+	@Test
+	void roundTripsPrivateFieldsBehindPublicGetters() {
+		CompiledDocumentMapper<GetterOnlyEntity> mapper = CompiledDocumentMapper.create(GetterOnlyEntity.class, null);
+		assertThat(mapper).isNotNull();
+		assertThat(mapper.getPropertyNames()).containsExactlyInAnyOrder("name", "count", "tags", "parentField");
+
+		GetterOnlyEntity entity = new GetterOnlyEntity("alice", 3, List.of("a", "b"), "parent");
+		Map<String, Object> data = mapper.toMap(entity);
+		assertThat(data).containsOnly(Map.entry("name", "alice"), Map.entry("count", 3L), Map.entry("tags", List.of("a", "b")),
+				Map.entry("parentField", "parent"));
+
+		GetterOnlyEntity read = mapper.toObject(snapshot(Map.of("name", "alice", "count", 3L, "tags", List.of("a", "b"), "parentField", "parent")));
+		assertThat(read.getName()).isEqualTo("alice");
+		assertThat(read.getCount()).isEqualTo(3);
+		assertThat(read.getTags()).containsExactly("a", "b");
+		assertThat(read.getParentField()).isEqualTo("parent");
+	}
+
+	@Test
+	void readsThroughNonPublicSettersBeforeFields() {
+		CompiledDocumentMapper<PrivateSetterEntity> mapper = CompiledDocumentMapper.create(PrivateSetterEntity.class, null);
+		assertThat(mapper).isNotNull();
+
+		PrivateSetterEntity read = mapper.toObject(snapshot(Map.of("name", "bob", "ignored", "x")));
+		assertThat(read.getName()).isEqualTo("bob");
+		assertThat(read.setterCalls).isEqualTo(1);
+		assertThat(mapper.getPropertyNames()).containsExactly("name");
+	}
+
+	private static DocumentSnapshot snapshot(Map<String, Object> data) {
+		DocumentSnapshot documentSnapshot = mock(DocumentSnapshot.class);
+		when(documentSnapshot.getData()).thenReturn(data);
+		return documentSnapshot;
+	}
+
+	static class ParentEntity {
+		private String parentField;
+
+		public String getParentField() {
+			return parentField;
+		}
+	}
+
+	static class GetterOnlyEntity extends ParentEntity {
+		private String name;
+		private long count;
+		private List<String> tags;
+
+		public GetterOnlyEntity() {
+		}
+
+		GetterOnlyEntity(String name, long count, List<String> tags, String parentField) {
+			this.name = name;
+			this.count = count;
+			this.tags = tags;
+			((ParentEntity) this).parentField = parentField;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public List<String> getTags() {
+			return tags;
+		}
+	}
+
+	static class PrivateSetterEntity {
+		private String name;
+		private String ignored;
+		private int setterCalls;
+
+		public String getName() {
+			return name;
+		}
+
+		private void setName(String name) {
+			this.name = name;
+			setterCalls++;
+		}
+
+		void setIgnored(String ignored) {
+			this.ignored = ignored;
+		}
+	}
+}
@@ -0,0 +1,49 @@
+package com.victorlh.gcp.spring.libpubsub.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.lang.reflect.Type;
+
+/**
+ * Decodifica JSON a cualquier tipo leyendo del ByteString sin pasar por un String intermedio.
+ * Solo se registra si Jackson esta en el classpath.
+ */
+public class JacksonMessageCodec implements MessageCodec {
+
+	private final ObjectProvider<ObjectMapper> objectMappers;
+	private volatile ObjectMapper objectMapper;
+
+	public JacksonMessageCodec() {
+		this(new ObjectMapper().findAndRegisterModules());
+	}
+
+	public JacksonMessageCodec(ObjectMapper objectMapper) {
+		this.objectMappers = null;
+		this.objectMapper = objectMapper;
+	}
+
+	/**
+	 * Usa el ObjectMapper de la aplicacion, resuelto la primera vez que se necesita. Si no hay uno unico se crea uno por defecto
+	 */
+	public JacksonMessageCodec(ObjectProvider<ObjectMapper> objectMappers) {
+		this.objectMappers = objectMappers;
+	}
+
+	@Override
+	public PayloadDecoder<?> getDecoder(Type type) {
+		ObjectMapper mapper = getObjectMapper();
+		ObjectReader reader = mapper.readerFor(mapper.constructType(type));
+		return data -> reader.readValue(data.newInput());
+	}
+
+	private ObjectMapper getObjectMapper() {
+		ObjectMapper mapper = objectMapper;
+		if (mapper == null) {
+			mapper = objectMappers.getIfUnique(() -> new ObjectMapper().findAndRegisterModules());
+			objectMapper = mapper;
+		}
+		return mapper;
+	}
+}
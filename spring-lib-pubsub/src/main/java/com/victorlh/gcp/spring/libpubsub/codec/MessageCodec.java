@@ -0,0 +1,17 @@
+package com.victorlh.gcp.spring.libpubsub.codec;
+
+import javax.annotation.Nullable;
+import java.lang.reflect.Type;
+
+/**
+ * Convierte el payload de un mensaje en el tipo del parametro del listener.
+ * Se pueden registrar implementaciones propias como beans, que tienen prioridad sobre las incluidas.
+ */
+public interface MessageCodec {
+
+	/**
+	 * @return Decodificador para el tipo o null si el codec no lo soporta
+	 */
+	@Nullable
+	PayloadDecoder<?> getDecoder(Type type);
+}
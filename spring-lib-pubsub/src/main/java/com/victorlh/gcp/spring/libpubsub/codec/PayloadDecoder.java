@@ -0,0 +1,14 @@
+package com.victorlh.gcp.spring.libpubsub.codec;
+
+import com.google.protobuf.ByteString;
+
+import java.io.IOException;
+
+/**
+ * Decodificador de payload para un tipo concreto, resuelto una unica vez al registrar el listener
+ */
+@FunctionalInterface
+public interface PayloadDecoder<T> {
+
+	T decode(ByteString data) throws IOException;
+}
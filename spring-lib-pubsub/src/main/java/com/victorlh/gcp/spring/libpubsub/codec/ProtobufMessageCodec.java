@@ -0,0 +1,31 @@
+package com.victorlh.gcp.spring.libpubsub.codec;
+
+import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
+
+import javax.annotation.Nullable;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Type;
+
+/**
+ * Decodifica mensajes protobuf generados, parseando directamente desde el ByteString
+ */
+public class ProtobufMessageCodec implements MessageCodec {
+
+	@Nullable
+	@Override
+	public PayloadDecoder<?> getDecoder(Type type) {
+		if (!(type instanceof Class) || !Message.class.isAssignableFrom((Class<?>) type)) {
+			return null;
+		}
+
+		Class<?> messageClass = (Class<?>) type;
+		try {
+			Parser<?> parser = (Parser<?>) messageClass.getMethod("parser").invoke(null);
+			return parser::parseFrom;
+		} catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+			String error = String.format("Message %s has not a protobuf parser", messageClass.getName());
+			throw new IllegalArgumentException(error, e);
+		}
+	}
+}
@@ -14,6 +14,6 @@ import java.lang.annotation.Target;
 
 @Target(ElementType.TYPE)
 @Retention(RetentionPolicy.RUNTIME)
-@Import({PubSubConfigurationSelector.class, GCPCredentialsConfiguration.class, PubSubPublisher.class})
+@Import({PubSubConfigurationSelector.class, GCPCredentialsConfiguration.class, PubSubProperties.class, PubSubMetricsConfiguration.class, PubSubPublisher.class})
 public @interface EnablePubSub {
 }
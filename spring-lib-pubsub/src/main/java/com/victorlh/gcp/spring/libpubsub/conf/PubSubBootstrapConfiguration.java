@@ -1,6 +1,7 @@
 package com.victorlh.gcp.spring.libpubsub.conf;
 
 import com.victorlh.gcp.spring.libpubsub.consumer.PubSubListenerAnnotationBeanPostProcessor;
+import com.victorlh.gcp.spring.libpubsub.consumer.PubSubListenerContainer;
 import org.springframework.beans.factory.support.BeanDefinitionRegistry;
 import org.springframework.beans.factory.support.RootBeanDefinition;
 import org.springframework.context.annotation.ImportBeanDefinitionRegistrar;
@@ -13,6 +14,9 @@ public class PubSubBootstrapConfiguration implements ImportBeanDefinitionRegistr
 		if (!registry.containsBeanDefinition(PubSubListenerAnnotationBeanPostProcessor.PUBSUB_LISTENER_ANNOTATION_BEAN_NAME)) {
 			registry.registerBeanDefinition(PubSubListenerAnnotationBeanPostProcessor.PUBSUB_LISTENER_ANNOTATION_BEAN_NAME, new RootBeanDefinition(PubSubListenerAnnotationBeanPostProcessor.class));
 		}
+		if (!registry.containsBeanDefinition(PubSubListenerContainer.PUBSUB_LISTENER_CONTAINER_BEAN_NAME)) {
+			registry.registerBeanDefinition(PubSubListenerContainer.PUBSUB_LISTENER_CONTAINER_BEAN_NAME, new RootBeanDefinition(PubSubListenerContainer.class));
+		}
 	}
 
 }
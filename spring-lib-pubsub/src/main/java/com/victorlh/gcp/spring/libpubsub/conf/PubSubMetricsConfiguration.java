@@ -0,0 +1,25 @@
+package com.victorlh.gcp.spring.libpubsub.conf;
+
+import com.victorlh.gcp.spring.libpubsub.metrics.MicrometerPubSubMetrics;
+import com.victorlh.gcp.spring.libpubsub.metrics.PubSubMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Solo se procesa si Micrometer esta en el classpath. Sin MeterRegistry en el contexto las metricas no hacen nada.
+ */
+@Configuration
+@ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+public class PubSubMetricsConfiguration {
+
+	@Bean
+	@ConditionalOnMissingBean
+	public PubSubMetrics pubSubMetrics(ObjectProvider<MeterRegistry> meterRegistry) {
+		MeterRegistry registry = meterRegistry.getIfAvailable();
+		return registry == null ? PubSubMetrics.NOOP : new MicrometerPubSubMetrics(registry);
+	}
+}
@@ -0,0 +1,72 @@
+package com.victorlh.gcp.spring.libpubsub.conf;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Configuration
+@ConfigurationProperties(prefix = "gcp.pubsub")
+@Data
+public class PubSubProperties {
+
+	/**
+	 * Configuracion por defecto de todos los subscribers
+	 */
+	private SubscriberProperties subscriber = new SubscriberProperties();
+	/**
+	 * Configuracion por nombre de suscripcion, tiene prioridad sobre la configuracion por defecto
+	 */
+	private Map<String, SubscriberProperties> subscriptions = new HashMap<>();
+	/**
+	 * Configuracion por defecto de todos los publishers
+	 */
+	private PublisherProperties publisher = new PublisherProperties();
+	/**
+	 * Configuracion por nombre de topic, tiene prioridad sobre la configuracion por defecto
+	 */
+	private Map<String, PublisherProperties> topics = new HashMap<>();
+	/**
+	 * Tiempo maximo de espera para enviar los mensajes pendientes al cerrar los publishers
+	 */
+	private Duration publisherShutdownTimeout = Duration.ofSeconds(30);
+	/**
+	 * Tiempo maximo de espera a los mensajes en proceso al parar los subscribers
+	 */
+	private Duration subscriberShutdownTimeout = Duration.ofSeconds(30);
+	/**
+	 * Arranca los subscribers al refrescar el contexto. Si es false se arrancan con PubSubListenerContainer.start()
+	 */
+	private boolean listenerAutoStartup = true;
+	/**
+	 * Arranca todos los subscribers a la vez en lugar de esperar a que cada uno este conectado
+	 */
+	private boolean parallelSubscriberStartup = false;
+
+	@Data
+	public static class SubscriberProperties {
+		private Integer parallelPullCount;
+		private Integer executorThreads;
+		private Long maxOutstandingMessages;
+		private Long maxOutstandingBytes;
+		private Integer batchMaxSize;
+		private Duration batchMaxWait;
+		private Integer pullMaxMessages;
+		private Integer ackDeadlineSeconds;
+		private Duration ackFlushInterval;
+		private Duration maxAckExtensionPeriod;
+	}
+
+	@Data
+	public static class PublisherProperties {
+		private Long batchElementCount;
+		private Long batchRequestBytes;
+		private Duration batchDelay;
+		private Long maxOutstandingMessages;
+		private Long maxOutstandingBytes;
+		private Boolean messageOrdering;
+	}
+}
@@ -0,0 +1,27 @@
+package com.victorlh.gcp.spring.libpubsub.consumer;
+
+import java.util.BitSet;
+
+/**
+ * Resultado opcional de un listener en modo batch. Indica por posicion los mensajes que se deben nackear,
+ * el resto se ackean. Los mensajes indicados se nackean siempre, con el retraso de {@link FailurePolicy#BACKOFF} si
+ * se ha configurado, y cuentan como intento para el dead letter. Si el listener no devuelve nada se ackea todo el lote
+ * y si lanza una excepcion se aplica la {@link FailurePolicy} del listener a todos los mensajes.
+ */
+public class BatchListenerResult {
+
+	private final BitSet failed = new BitSet();
+
+	public static BatchListenerResult success() {
+		return new BatchListenerResult();
+	}
+
+	public BatchListenerResult nack(int index) {
+		failed.set(index);
+		return this;
+	}
+
+	public boolean isAck(int index) {
+		return !failed.get(index);
+	}
+}
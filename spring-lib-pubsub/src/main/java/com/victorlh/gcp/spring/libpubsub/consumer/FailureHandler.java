@@ -0,0 +1,177 @@
+package com.victorlh.gcp.spring.libpubsub.consumer;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.cloud.pubsub.v1.AckReplyConsumer;
+import com.google.cloud.pubsub.v1.Subscriber;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.pubsub.v1.PubsubMessage;
+import com.victorlh.gcp.spring.libpubsub.metrics.InstrumentedAckReplyConsumer;
+import com.victorlh.gcp.spring.libpubsub.publisher.PubSubPublisher;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import javax.annotation.Nullable;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Aplica la {@link FailurePolicy} de una suscripcion. Si se configura maxDeliveryAttempts, al alcanzar los intentos
+ * el mensaje se publica en deadLetterTopic y se ackea. Los intentos salen de {@link Subscriber#getDeliveryAttempt}
+ * cuando la suscripcion tiene dead letter policy en servidor y si no se cuentan los fallos en esta instancia.
+ */
+@Slf4j
+class FailureHandler {
+
+	static final String DEAD_LETTER_SUBSCRIPTION_ATTRIBUTE = "deadLetterSourceSubscription";
+	static final String DEAD_LETTER_ATTEMPTS_ATTRIBUTE = "deadLetterDeliveryAttempts";
+	static final String DEAD_LETTER_ERROR_ATTRIBUTE = "deadLetterError";
+
+	private static final int MAX_TRACKED_MESSAGES = 10_000;
+	private static final int MAX_ERROR_LENGTH = 1024;
+
+	private final String subscription;
+	private final FailurePolicy policy;
+	private final Duration backoffInitial;
+	private final Duration backoffMax;
+	private final int maxDeliveryAttempts;
+	private final String deadLetterTopic;
+	private final Supplier<PubSubPublisher> publisher;
+	@Nullable
+	private final ScheduledExecutorService scheduler;
+	private final Map<String, Integer> localAttempts;
+
+	FailureHandler(String subscription, FailurePolicy policy, Duration backoffInitial, Duration backoffMax,
+				   int maxDeliveryAttempts, String deadLetterTopic, Supplier<PubSubPublisher> publisher) {
+		this.subscription = subscription;
+		this.policy = policy;
+		this.backoffInitial = backoffInitial;
+		this.backoffMax = backoffMax;
+		this.maxDeliveryAttempts = maxDeliveryAttempts;
+		this.deadLetterTopic = deadLetterTopic;
+		this.publisher = publisher;
+		this.localAttempts = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+				return size() > MAX_TRACKED_MESSAGES;
+			}
+		};
+
+		if (policy == FailurePolicy.BACKOFF) {
+			CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("pubsub-backoff-" + subscription + "-");
+			threadFactory.setDaemon(true);
+			this.scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+		} else {
+			this.scheduler = null;
+		}
+	}
+
+	void onFailure(PubsubMessage message, AckReplyConsumer ackReplyConsumer, Throwable error) {
+		int attempt = getDeliveryAttempt(message);
+		if (maxDeliveryAttempts > 0 && attempt >= maxDeliveryAttempts) {
+			deadLetter(message, ackReplyConsumer, attempt, error);
+			return;
+		}
+
+		if (policy == FailurePolicy.NACK) {
+			ackReplyConsumer.nack();
+		} else if (policy == FailurePolicy.BACKOFF) {
+			nackWithBackoff(message, ackReplyConsumer, attempt);
+		} else {
+			InstrumentedAckReplyConsumer.noReply(ackReplyConsumer);
+		}
+	}
+
+	/**
+	 * Nack pedido explicitamente por el listener: siempre se nackea aunque la politica sea {@link FailurePolicy#NONE},
+	 * con el retraso de {@link FailurePolicy#BACKOFF} si se ha configurado, y cuenta como intento para el dead letter
+	 */
+	void onNack(PubsubMessage message, AckReplyConsumer ackReplyConsumer, Throwable error) {
+		int attempt = getDeliveryAttempt(message);
+		if (maxDeliveryAttempts > 0 && attempt >= maxDeliveryAttempts) {
+			deadLetter(message, ackReplyConsumer, attempt, error);
+			return;
+		}
+
+		if (policy == FailurePolicy.BACKOFF) {
+			nackWithBackoff(message, ackReplyConsumer, attempt);
+		} else {
+			ackReplyConsumer.nack();
+		}
+	}
+
+	/**
+	 * Los nacks retrasados pendientes se descartan, esos mensajes se reenvian al expirar el ack deadline
+	 */
+	void close() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+		}
+	}
+
+	private void nackWithBackoff(PubsubMessage message, AckReplyConsumer ackReplyConsumer, int attempt) {
+		if (scheduler == null) {
+			ackReplyConsumer.nack();
+			return;
+		}
+		long delay = getBackoffMillis(attempt);
+		log.debug("PUB/SUB Message [{}] nack in {} ms, attempt {}", message.getMessageId(), delay, attempt);
+		scheduler.schedule(ackReplyConsumer::nack, delay, TimeUnit.MILLISECONDS);
+	}
+
+	private void deadLetter(PubsubMessage message, AckReplyConsumer ackReplyConsumer, int attempt, Throwable error) {
+		PubsubMessage deadLetterMessage = message.toBuilder()
+				.clearMessageId()
+				.clearPublishTime()
+				.clearOrderingKey()
+				.putAttributes(DEAD_LETTER_SUBSCRIPTION_ATTRIBUTE, subscription)
+				.putAttributes(DEAD_LETTER_ATTEMPTS_ATTRIBUTE, String.valueOf(attempt))
+				.putAttributes(DEAD_LETTER_ERROR_ATTRIBUTE, StringUtils.abbreviate(String.valueOf(error), MAX_ERROR_LENGTH))
+				.build();
+
+		ApiFuture<String> apiFuture = publisher.get().sendMessage(deadLetterTopic, deadLetterMessage);
+		ApiFutures.addCallback(apiFuture, new ApiFutureCallback<>() {
+			@Override
+			public void onSuccess(String messageId) {
+				log.warn("PUB/SUB Message [{}] sent to dead letter topic {} after {} attempts", message.getMessageId(), deadLetterTopic, attempt);
+				forget(message);
+				ackReplyConsumer.ack();
+			}
+
+			@Override
+			public void onFailure(Throwable t) {
+				log.error("PUB/SUB Message [{}] dead letter error", message.getMessageId(), t);
+				ackReplyConsumer.nack();
+			}
+		}, MoreExecutors.directExecutor());
+	}
+
+	private int getDeliveryAttempt(PubsubMessage message) {
+		Integer deliveryAttempt = Subscriber.getDeliveryAttempt(message);
+		if (deliveryAttempt != null) {
+			return deliveryAttempt;
+		}
+		synchronized (localAttempts) {
+			return localAttempts.merge(message.getMessageId(), 1, Integer::sum);
+		}
+	}
+
+	private void forget(PubsubMessage message) {
+		synchronized (localAttempts) {
+			localAttempts.remove(message.getMessageId());
+		}
+	}
+
+	private long getBackoffMillis(int attempt) {
+		int exponent = Math.min(Math.max(attempt - 1, 0), 30);
+		long delay = backoffInitial.toMillis() << exponent;
+		return Math.min(delay, backoffMax.toMillis());
+	}
+}
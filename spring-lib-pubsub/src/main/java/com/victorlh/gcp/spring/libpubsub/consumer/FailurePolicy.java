@@ -0,0 +1,19 @@
+package com.victorlh.gcp.spring.libpubsub.consumer;
+
+/**
+ * Respuesta a un mensaje cuyo listener ha fallado
+ */
+public enum FailurePolicy {
+	/**
+	 * No se responde, se reenvia cuando expira el ack deadline
+	 */
+	NONE,
+	/**
+	 * Nack inmediato, se reenvia en cuanto sea posible
+	 */
+	NACK,
+	/**
+	 * Nack retrasado de forma exponencial segun el numero de intentos
+	 */
+	BACKOFF
+}
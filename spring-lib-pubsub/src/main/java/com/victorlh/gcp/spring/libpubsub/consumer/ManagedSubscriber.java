@@ -0,0 +1,40 @@
+package com.victorlh.gcp.spring.libpubsub.consumer;
+
+import java.time.Duration;
+
+/**
+ * Motor de consumo de una suscripcion gestionado por {@link PubSubListenerContainer}.
+ * Se puede arrancar de nuevo despues de pararlo.
+ */
+interface ManagedSubscriber {
+
+	String getSubscription();
+
+	/**
+	 * Empieza a recibir mensajes sin esperar a que la conexion este lista
+	 */
+	void start();
+
+	void awaitRunning();
+
+	/**
+	 * Deja de pedir mensajes sin esperar a los que se estan procesando
+	 */
+	void stop();
+
+	/**
+	 * Espera a que se respondan los mensajes en proceso
+	 *
+	 * @return false si se agota el tiempo con mensajes pendientes
+	 */
+	boolean awaitTerminated(Duration timeout);
+
+	/**
+	 * Deja de pedir mensajes nuevos, los que estan en proceso terminan normalmente
+	 */
+	void pause();
+
+	void resume();
+
+	boolean isPaused();
+}
@@ -0,0 +1,15 @@
+package com.victorlh.gcp.spring.libpubsub.consumer;
+
+import com.google.cloud.pubsub.v1.AckReplyConsumer;
+import com.google.pubsub.v1.PubsubMessage;
+
+import java.io.IOException;
+
+/**
+ * Obtiene el valor de un parametro del listener a partir del mensaje
+ */
+@FunctionalInterface
+interface MessageArgumentResolver {
+
+	Object resolve(PubsubMessage message, AckReplyConsumer ackReplyConsumer) throws IOException;
+}
@@ -0,0 +1,102 @@
+package com.victorlh.gcp.spring.libpubsub.consumer;
+
+import com.google.cloud.pubsub.v1.AckReplyConsumer;
+import com.google.pubsub.v1.PubsubMessage;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Acumula los mensajes de una suscripcion hasta completar el tamaño maximo o agotar la espera maxima
+ * desde el primer mensaje. El lote se entrega en el hilo que lo completa o en el del scheduler.
+ */
+class MessageBatcher {
+
+	private final int maxSize;
+	private final Duration maxWait;
+	private final ScheduledExecutorService scheduler;
+	private final Consumer<List<PendingMessage>> handler;
+
+	private List<PendingMessage> pending;
+	private ScheduledFuture<?> timeout;
+
+	MessageBatcher(int maxSize, Duration maxWait, ScheduledExecutorService scheduler, Consumer<List<PendingMessage>> handler) {
+		this.maxSize = maxSize;
+		this.maxWait = maxWait;
+		this.scheduler = scheduler;
+		this.handler = handler;
+		this.pending = new ArrayList<>(maxSize);
+	}
+
+	void add(PubsubMessage message, AckReplyConsumer ackReplyConsumer) {
+		List<PendingMessage> batch = null;
+		synchronized (this) {
+			pending.add(new PendingMessage(message, ackReplyConsumer));
+			if (pending.size() >= maxSize) {
+				batch = takePending();
+			} else if (pending.size() == 1) {
+				List<PendingMessage> current = pending;
+				timeout = scheduler.schedule(() -> flush(current), maxWait.toNanos(), TimeUnit.NANOSECONDS);
+			}
+		}
+		if (batch != null) {
+			handler.accept(batch);
+		}
+	}
+
+	private void flush(List<PendingMessage> expected) {
+		List<PendingMessage> batch;
+		synchronized (this) {
+			// El lote ya se entrego por tamaño antes de que saltara el timeout
+			if (pending != expected || pending.isEmpty()) {
+				return;
+			}
+			batch = takePending();
+		}
+		handler.accept(batch);
+	}
+
+	/**
+	 * Entrega el lote pendiente sin esperar al timeout
+	 */
+	void flush() {
+		List<PendingMessage> batch;
+		synchronized (this) {
+			batch = pending.isEmpty() ? null : takePending();
+		}
+		if (batch != null) {
+			handler.accept(batch);
+		}
+	}
+
+	/**
+	 * Libera el scheduler, los mensajes pendientes se tienen que haber entregado antes con {@link #flush()}
+	 */
+	void close() {
+		scheduler.shutdownNow();
+	}
+
+	private List<PendingMessage> takePending() {
+		List<PendingMessage> batch = pending;
+		pending = new ArrayList<>(maxSize);
+		if (timeout != null) {
+			timeout.cancel(false);
+			timeout = null;
+		}
+		return batch;
+	}
+
+	@RequiredArgsConstructor
+	@Getter
+	static class PendingMessage {
+		private final PubsubMessage message;
+		private final AckReplyConsumer ackReplyConsumer;
+	}
+}
@@ -0,0 +1,105 @@
+package com.victorlh.gcp.spring.libpubsub.consumer;
+
+import com.google.pubsub.v1.PubsubMessage;
+import com.victorlh.gcp.spring.libpubsub.dedup.DeduplicationStats;
+import com.victorlh.gcp.spring.libpubsub.dedup.DeduplicationStore;
+import org.apache.commons.lang3.StringUtils;
+
+import javax.annotation.Nullable;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Descarta mensajes ya procesados. La clave es el atributo configurado o el messageId.
+ * Las claves se recuerdan durante la ventana en un mapa acotado y, si hay {@link DeduplicationStore}, tambien en el.
+ * Solo se marcan los mensajes procesados correctamente, para que un reintento tras un fallo no se descarte.
+ */
+class MessageDeduplicator {
+
+	@Nullable
+	private final String attribute;
+	private final long windowNanos;
+	private final int maxSize;
+	@Nullable
+	private final DeduplicationStore store;
+
+	private final LinkedHashMap<String, Long> seen = new LinkedHashMap<>();
+	private final LongAdder checkCount = new LongAdder();
+	private final LongAdder duplicateCount = new LongAdder();
+
+	MessageDeduplicator(@Nullable String attribute, Duration window, int maxSize, @Nullable DeduplicationStore store) {
+		this.attribute = StringUtils.isBlank(attribute) ? null : attribute;
+		this.windowNanos = window.toNanos();
+		this.maxSize = maxSize;
+		this.store = store;
+	}
+
+	boolean isDuplicate(PubsubMessage message) {
+		checkCount.increment();
+		String key = getKey(message);
+		boolean duplicate;
+		synchronized (seen) {
+			Long seenAt = seen.get(key);
+			duplicate = seenAt != null && System.nanoTime() - seenAt < windowNanos;
+		}
+		if (!duplicate && store != null) {
+			duplicate = store.contains(key);
+		}
+		if (duplicate) {
+			duplicateCount.increment();
+		}
+		return duplicate;
+	}
+
+	void markProcessed(PubsubMessage message) {
+		String key = getKey(message);
+		long now = System.nanoTime();
+		synchronized (seen) {
+			seen.remove(key);
+			seen.put(key, now);
+			evict(now);
+		}
+		if (store != null) {
+			store.add(key);
+		}
+	}
+
+	DeduplicationStats getStats() {
+		int size;
+		synchronized (seen) {
+			size = seen.size();
+		}
+		return DeduplicationStats.builder()
+				.checkCount(checkCount.sum())
+				.duplicateCount(duplicateCount.sum())
+				.size(size)
+				.build();
+	}
+
+	/**
+	 * El mapa esta ordenado por insercion, asi que las claves caducadas o sobrantes estan al principio
+	 */
+	private void evict(long now) {
+		Iterator<Map.Entry<String, Long>> iterator = seen.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<String, Long> eldest = iterator.next();
+			if (seen.size() <= maxSize && now - eldest.getValue() < windowNanos) {
+				return;
+			}
+			iterator.remove();
+		}
+	}
+
+	private String getKey(PubsubMessage message) {
+		if (attribute != null) {
+			String value = message.getAttributesOrDefault(attribute, null);
+			if (value != null) {
+				return value;
+			}
+		}
+		return message.getMessageId();
+	}
+}
@@ -11,4 +11,85 @@ public @interface PubSubListener {
 
 	String[] subscriptions() default {};
 
+	/**
+	 * Numero de streams de pull en paralelo por suscripcion. Valor negativo para usar gcp.pubsub o el valor del cliente
+	 */
+	int parallelPullCount() default -1;
+
+	/**
+	 * Hilos del executor que invoca al listener
+	 */
+	int executorThreads() default -1;
+
+	/**
+	 * Mensajes maximos pendientes de ack antes de dejar de pedir mas
+	 */
+	long maxOutstandingMessages() default -1;
+
+	/**
+	 * Bytes maximos pendientes de ack antes de dejar de pedir mas
+	 */
+	long maxOutstandingBytes() default -1;
+
+	/**
+	 * Solo en modo batch (parametro List): mensajes maximos por invocacion
+	 */
+	int batchMaxSize() default -1;
+
+	/**
+	 * Solo en modo batch (parametro List): espera maxima en milisegundos desde el primer mensaje del lote
+	 */
+	long batchMaxWaitMillis() default -1;
+
+	PullMode pullMode() default PullMode.STREAMING;
+
+	/**
+	 * Solo con {@link PullMode#SYNCHRONOUS}: mensajes maximos por peticion de pull
+	 */
+	int pullMaxMessages() default -1;
+
+	/**
+	 * Solo con {@link PullMode#SYNCHRONOUS}: segundos de ack deadline que se renuevan mientras se procesa el mensaje
+	 */
+	int ackDeadlineSeconds() default -1;
+
+	/**
+	 * Respuesta cuando el listener lanza una excepcion o el payload no se puede decodificar
+	 */
+	FailurePolicy failurePolicy() default FailurePolicy.NONE;
+
+	/**
+	 * Con {@link FailurePolicy#BACKOFF}: espera del primer nack, se duplica en cada intento
+	 */
+	long backoffInitialMillis() default 1000;
+
+	/**
+	 * Con {@link FailurePolicy#BACKOFF}: espera maxima de un nack
+	 */
+	long backoffMaxMillis() default 60000;
+
+	/**
+	 * Intentos tras los que el mensaje se publica en deadLetterTopic y se ackea. Valor negativo para no limitar
+	 */
+	int maxDeliveryAttempts() default -1;
+
+	String deadLetterTopic() default "";
+
+	/**
+	 * Ackea sin invocar al listener los mensajes ya procesados correctamente dentro de la ventana
+	 */
+	boolean deduplicate() default false;
+
+	/**
+	 * Atributo con la clave de deduplicacion. Vacio o ausente en el mensaje para usar el messageId
+	 */
+	String deduplicationAttribute() default "";
+
+	long deduplicationWindowSeconds() default 600;
+
+	/**
+	 * Claves maximas recordadas en memoria por suscripcion
+	 */
+	int deduplicationMaxSize() default 100_000;
+
 }
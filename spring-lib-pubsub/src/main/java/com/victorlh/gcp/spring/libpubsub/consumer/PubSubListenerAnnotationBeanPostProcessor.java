@@ -1,37 +1,118 @@
 package com.victorlh.gcp.spring.libpubsub.consumer;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.api.gax.batching.FlowControlSettings;
+import com.google.api.gax.core.InstantiatingExecutorProvider;
 import com.google.auth.oauth2.GoogleCredentials;
 import com.google.auth.oauth2.ServiceAccountCredentials;
 import com.google.cloud.pubsub.v1.AckReplyConsumer;
+import com.google.cloud.pubsub.v1.MessageReceiver;
 import com.google.cloud.pubsub.v1.Subscriber;
+import com.google.cloud.pubsub.v1.stub.GrpcSubscriberStub;
+import com.google.cloud.pubsub.v1.stub.SubscriberStub;
+import com.google.cloud.pubsub.v1.stub.SubscriberStubSettings;
 import com.google.protobuf.ByteString;
 import com.google.pubsub.v1.ProjectSubscriptionName;
 import com.google.pubsub.v1.PubsubMessage;
+import com.victorlh.gcp.spring.libpubsub.codec.JacksonMessageCodec;
+import com.victorlh.gcp.spring.libpubsub.codec.MessageCodec;
+import com.victorlh.gcp.spring.libpubsub.codec.PayloadDecoder;
+import com.victorlh.gcp.spring.libpubsub.codec.ProtobufMessageCodec;
+import com.victorlh.gcp.spring.libpubsub.conf.PubSubProperties;
+import com.victorlh.gcp.spring.libpubsub.dedup.DeduplicationStats;
+import com.victorlh.gcp.spring.libpubsub.dedup.DeduplicationStore;
+import com.victorlh.gcp.spring.libpubsub.metrics.PubSubMetrics;
+import com.victorlh.gcp.spring.libpubsub.publisher.PubSubPublisher;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.aop.support.AopUtils;
 import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.ClassUtils;
 
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.nio.charset.Charset;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Supplier;
 
 @Slf4j
-@RequiredArgsConstructor
-public class PubSubListenerAnnotationBeanPostProcessor implements BeanPostProcessor {
+public class PubSubListenerAnnotationBeanPostProcessor implements BeanPostProcessor, BeanFactoryAware {
 
 	public static final String PUBSUB_LISTENER_ANNOTATION_BEAN_NAME = "PubSubListenerAnnotationBeanPostProcessor";
+	private static final String JACKSON_OBJECT_MAPPER = "com.fasterxml.jackson.databind.ObjectMapper";
+	private static final int DEFAULT_BATCH_MAX_SIZE = 100;
+	private static final Duration DEFAULT_BATCH_MAX_WAIT = Duration.ofSeconds(1);
+	private static final int DEFAULT_PULL_MAX_MESSAGES = 100;
+	private static final int DEFAULT_ACK_DEADLINE_SECONDS = 60;
+	private static final Duration DEFAULT_ACK_FLUSH_INTERVAL = Duration.ofMillis(100);
+	private static final Duration DEFAULT_MAX_ACK_EXTENSION_PERIOD = Duration.ofMinutes(60);
 
 	private final Set<Class<?>> nonAnnotatedClasses = Collections.newSetFromMap(new ConcurrentHashMap<>(64));
 
 	private final GoogleCredentials googleCredentials;
+	private final PubSubProperties pubSubProperties;
+	private final List<MessageCodec> messageCodecs;
+	private final ObjectProvider<PubSubPublisher> pubSubPublisher;
+	private final ObjectProvider<DeduplicationStore> deduplicationStore;
+	private final ObjectProvider<PubSubMetrics> pubSubMetrics;
+	private final ObjectProvider<PubSubListenerContainer> listenerContainer;
+	private final Map<String, MessageDeduplicator> deduplicators = new ConcurrentHashMap<>();
+
+	public PubSubListenerAnnotationBeanPostProcessor(GoogleCredentials googleCredentials, PubSubProperties pubSubProperties,
+													 ObjectProvider<MessageCodec> messageCodecs, ObjectProvider<PubSubPublisher> pubSubPublisher,
+													 ObjectProvider<DeduplicationStore> deduplicationStore, ObjectProvider<PubSubMetrics> pubSubMetrics,
+													 ObjectProvider<PubSubListenerContainer> listenerContainer) {
+		this.googleCredentials = googleCredentials;
+		this.pubSubProperties = pubSubProperties;
+		this.pubSubPublisher = pubSubPublisher;
+		this.deduplicationStore = deduplicationStore;
+		this.pubSubMetrics = pubSubMetrics;
+		this.listenerContainer = listenerContainer;
+		this.messageCodecs = new ArrayList<>();
+		messageCodecs.orderedStream().forEach(this.messageCodecs::add);
+		this.messageCodecs.add(new ProtobufMessageCodec());
+	}
+
+	/**
+	 * El codec JSON usa el ObjectMapper de la aplicacion si existe
+	 */
+	@Override
+	public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
+		if (ClassUtils.isPresent(JACKSON_OBJECT_MAPPER, getClass().getClassLoader())) {
+			this.messageCodecs.add(new JacksonMessageCodec(beanFactory.getBeanProvider(ObjectMapper.class)));
+		}
+	}
+
+	/**
+	 * Estadisticas de deduplicacion por suscripcion, solo de los listeners con deduplicate
+	 */
+	public Map<String, DeduplicationStats> getDeduplicationStats() {
+		Map<String, DeduplicationStats> stats = new HashMap<>();
+		deduplicators.forEach((subscription, deduplicator) -> stats.put(subscription, deduplicator.getStats()));
+		return stats;
+	}
 
 	@Override
 	public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
@@ -53,39 +134,247 @@ public class PubSubListenerAnnotationBeanPostProcessor implements BeanPostProces
 	private void processMethod(MethodListener method, Object bean) {
 		String[] subscriptions = method.getSubscriptions();
 		for (String sub : subscriptions) {
-			newSubscriber(sub, method.getMethod(), bean);
+			SubscriberOptions options = SubscriberOptions.resolve(method.getAnnotation(), pubSubProperties, sub);
+			newSubscriber(sub, options, method, bean);
 		}
 	}
 
-	private void newSubscriber(String subscription, Method method, Object bean) {
+	private void newSubscriber(String subscription, SubscriberOptions options, MethodListener method, Object bean) {
 		ProjectSubscriptionName subscriptionName = ProjectSubscriptionName.of(getProjectId(), subscription);
-		Subscriber subscriber = Subscriber
-				.newBuilder(subscriptionName, (pubsubMessage, ackReplyConsumer) -> receiveMessage(pubsubMessage, ackReplyConsumer, method, bean))
-				.setCredentialsProvider(() -> googleCredentials)
-				.build();
-		subscriber.startAsync();
+		ListenerReceiver listenerReceiver = newReceiver(subscription, options, method, bean);
+		MessageReceiver receiver = listenerReceiver.getReceiver();
+
+		ManagedSubscriber subscriber;
+		if (options.getPullMode() == PullMode.SYNCHRONOUS) {
+			subscriber = newSynchronousPullSubscriber(subscriptionName, options, receiver);
+		} else {
+			subscriber = newStreamingSubscriber(subscriptionName, options, receiver);
+		}
+		listenerContainer.getObject().register(subscriber, listenerReceiver.getFlushAction(), listenerReceiver.getCloseAction());
 	}
 
-	public void receiveMessage(PubsubMessage pubsubMessage, AckReplyConsumer ackReplyConsumer, Method method, Object bean) {
-		log.trace("PUB/SUB Message Receive: {}", pubsubMessage.getMessageId());
+	/**
+	 * Construye el receptor del metodo {@link PubSubListener} de un bean para una suscripcion, con la misma politica de fallo,
+	 * deduplicacion y metricas que el de su subscriber pero sin crear el subscriber. Sirve para probar o medir el despacho
+	 * de mensajes sin conexion a Pub/Sub; hay que cerrarlo al terminar
+	 */
+	ListenerReceiver newListenerReceiver(Object bean, String methodName, String subscription) {
+		Class<?> targetClass = AopUtils.getTargetClass(bean);
+		MethodListener method = findMethods(targetClass).stream()
+				.filter(methodListener -> methodListener.getMethod().getName().equals(methodName))
+				.findFirst()
+				.orElseThrow(() -> {
+					String error = String.format("Method %s in class %s is not annotated with @PubSubListener", methodName, targetClass.getSimpleName());
+					return new IllegalArgumentException(error);
+				});
+		SubscriberOptions options = SubscriberOptions.resolve(method.getAnnotation(), pubSubProperties, subscription);
+		return newReceiver(subscription, options, method, bean);
+	}
 
-		Class<?>[] parameterTypes = method.getParameterTypes();
-		Object[] values = new Object[parameterTypes.length];
+	/**
+	 * Construye el receptor de un listener con su politica de fallo, deduplicacion y metricas, sin crear el subscriber
+	 */
+	private ListenerReceiver newReceiver(String subscription, SubscriberOptions options, MethodListener method, Object bean) {
+		PubSubListener annotation = method.getAnnotation();
+		FailureHandler failureHandler = new FailureHandler(subscription, annotation.failurePolicy(),
+				Duration.ofMillis(annotation.backoffInitialMillis()), Duration.ofMillis(annotation.backoffMaxMillis()),
+				annotation.maxDeliveryAttempts(), annotation.deadLetterTopic(), pubSubPublisher::getObject);
+		MessageDeduplicator deduplicator = null;
+		if (annotation.deduplicate()) {
+			deduplicator = new MessageDeduplicator(annotation.deduplicationAttribute(), Duration.ofSeconds(annotation.deduplicationWindowSeconds()),
+					annotation.deduplicationMaxSize(), deduplicationStore.getIfAvailable());
+			deduplicators.put(subscription, deduplicator);
+		}
 
-		for (int i = 0; i < parameterTypes.length; i++) {
-			if (parameterTypes[i].isAssignableFrom(PubsubMessage.class)) {
-				values[i] = pubsubMessage;
-			} else {
-				ByteString data = pubsubMessage.getData();
-				values[i] = data.toString(Charset.defaultCharset());
+		MessageReceiver receiver;
+		Runnable flushAction = () -> {
+		};
+		Runnable closeAction = failureHandler::close;
+		if (method.isBatch()) {
+			MessageBatcher batcher = newBatcher(subscription, options, method, bean, failureHandler, deduplicator);
+			receiver = batcher::add;
+			flushAction = batcher::flush;
+			closeAction = () -> {
+				batcher.close();
+				failureHandler.close();
+			};
+		} else {
+			MessageDeduplicator messageDeduplicator = deduplicator;
+			receiver = (pubsubMessage, ackReplyConsumer) -> receiveMessage(pubsubMessage, ackReplyConsumer, method, bean, failureHandler, messageDeduplicator);
+		}
+
+		receiver = pubSubMetrics.getIfAvailable(() -> PubSubMetrics.NOOP).instrument(subscription, receiver);
+		return new ListenerReceiver(receiver, flushAction, closeAction);
+	}
+
+	private ManagedSubscriber newStreamingSubscriber(ProjectSubscriptionName subscriptionName, SubscriberOptions options, MessageReceiver receiver) {
+
+		Subscriber.Builder builder = Subscriber
+				.newBuilder(subscriptionName, receiver)
+				.setCredentialsProvider(() -> googleCredentials);
+
+		if (options.getParallelPullCount() != null) {
+			builder.setParallelPullCount(options.getParallelPullCount());
+		}
+		if (options.getExecutorThreads() != null) {
+			builder.setExecutorProvider(InstantiatingExecutorProvider.newBuilder()
+					.setExecutorThreadCount(options.getExecutorThreads())
+					.build());
+		}
+		if (options.getMaxOutstandingMessages() != null || options.getMaxOutstandingBytes() != null) {
+			FlowControlSettings.Builder flowControl = Subscriber.Builder.getDefaultFlowControlSettings().toBuilder();
+			if (options.getMaxOutstandingMessages() != null) {
+				flowControl.setMaxOutstandingElementCount(options.getMaxOutstandingMessages());
+			}
+			if (options.getMaxOutstandingBytes() != null) {
+				flowControl.setMaxOutstandingRequestBytes(options.getMaxOutstandingBytes());
+			}
+			builder.setFlowControlSettings(flowControl.build());
+		}
+		if (options.getMaxAckExtensionPeriod() != null) {
+			builder.setMaxAckExtensionPeriod(org.threeten.bp.Duration.ofMillis(options.getMaxAckExtensionPeriod().toMillis()));
+		}
+
+		log.debug("PUB/SUB subscriber {} {}", subscriptionName.getSubscription(), options);
+		return new StreamingSubscriber(subscriptionName.getSubscription(), builder);
+	}
+
+	private ManagedSubscriber newSynchronousPullSubscriber(ProjectSubscriptionName subscriptionName, SubscriberOptions options, MessageReceiver receiver) {
+		int maxMessages = options.getPullMaxMessages() != null ? options.getPullMaxMessages() : DEFAULT_PULL_MAX_MESSAGES;
+		long maxOutstanding = options.getMaxOutstandingMessages() != null ? options.getMaxOutstandingMessages() : maxMessages;
+		int executorThreads = options.getExecutorThreads() != null ? options.getExecutorThreads() : Runtime.getRuntime().availableProcessors();
+		int ackDeadlineSeconds = options.getAckDeadlineSeconds() != null ? options.getAckDeadlineSeconds() : DEFAULT_ACK_DEADLINE_SECONDS;
+		Duration ackFlushInterval = options.getAckFlushInterval() != null ? options.getAckFlushInterval() : DEFAULT_ACK_FLUSH_INTERVAL;
+		Duration maxAckExtensionPeriod = options.getMaxAckExtensionPeriod() != null ? options.getMaxAckExtensionPeriod() : DEFAULT_MAX_ACK_EXTENSION_PERIOD;
+
+		Supplier<SubscriberStub> stubFactory = () -> {
+			try {
+				SubscriberStubSettings settings = SubscriberStubSettings.newBuilder()
+						.setCredentialsProvider(() -> googleCredentials)
+						.build();
+				return GrpcSubscriberStub.create(settings);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		};
+
+		log.debug("PUB/SUB synchronous pull subscriber {} {}", subscriptionName.getSubscription(), options);
+		return new SynchronousPullSubscriber(subscriptionName.toString(), stubFactory, receiver,
+				maxMessages, (int) Math.min(Integer.MAX_VALUE, maxOutstanding), executorThreads, ackDeadlineSeconds, ackFlushInterval, maxAckExtensionPeriod);
+	}
+
+	private MessageBatcher newBatcher(String subscription, SubscriberOptions options, MethodListener method, Object bean,
+									  FailureHandler failureHandler, @Nullable MessageDeduplicator deduplicator) {
+		int maxSize = options.getBatchMaxSize() != null ? options.getBatchMaxSize() : DEFAULT_BATCH_MAX_SIZE;
+		Duration maxWait = options.getBatchMaxWait() != null ? options.getBatchMaxWait() : DEFAULT_BATCH_MAX_WAIT;
+
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("pubsub-batch-" + subscription + "-");
+		threadFactory.setDaemon(true);
+		ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+		return new MessageBatcher(maxSize, maxWait, scheduler, batch -> receiveBatch(batch, method, bean, failureHandler, deduplicator));
+	}
+
+	private void receiveBatch(List<MessageBatcher.PendingMessage> batch, MethodListener method, Object bean,
+							  FailureHandler failureHandler, @Nullable MessageDeduplicator deduplicator) {
+		log.trace("PUB/SUB Batch Receive: {} messages", batch.size());
+
+		MessageArgumentResolver resolver = method.getResolvers()[0];
+		List<MessageBatcher.PendingMessage> accepted = new ArrayList<>(batch.size());
+		List<Object> values = new ArrayList<>(batch.size());
+		for (MessageBatcher.PendingMessage pending : batch) {
+			if (deduplicator != null && deduplicator.isDuplicate(pending.getMessage())) {
+				log.debug("PUB/SUB Message [{}] duplicated", pending.getMessage().getMessageId());
+				pending.getAckReplyConsumer().ack();
+				continue;
 			}
+			try {
+				values.add(resolver.resolve(pending.getMessage(), pending.getAckReplyConsumer()));
+				accepted.add(pending);
+			} catch (IOException | RuntimeException e) {
+				log.error("PUB/SUB Message [{}] decode error", pending.getMessage().getMessageId(), e);
+				failureHandler.onFailure(pending.getMessage(), pending.getAckReplyConsumer(), e);
+			}
+		}
+
+		if (accepted.isEmpty()) {
+			return;
 		}
 
+		BatchListenerResult result;
 		try {
-			method.invoke(bean, values);
+			Object returnValue = method.getMethod().invoke(bean, values);
+			result = returnValue instanceof BatchListenerResult ? (BatchListenerResult) returnValue : BatchListenerResult.success();
+		} catch (IllegalAccessException | InvocationTargetException e) {
+			log.error("PUB/SUB Batch of {} messages invoke error", accepted.size(), e);
+			Throwable cause = e instanceof InvocationTargetException ? e.getCause() : e;
+			accepted.forEach(pending -> failureHandler.onFailure(pending.getMessage(), pending.getAckReplyConsumer(), cause));
+			return;
+		}
+
+		for (int i = 0; i < accepted.size(); i++) {
+			MessageBatcher.PendingMessage pending = accepted.get(i);
+			if (result.isAck(i)) {
+				pending.getAckReplyConsumer().ack();
+				if (deduplicator != null) {
+					deduplicator.markProcessed(pending.getMessage());
+				}
+			} else {
+				failureHandler.onNack(pending.getMessage(), pending.getAckReplyConsumer(), new IllegalStateException("Nack from batch listener"));
+			}
+		}
+	}
+
+	private void receiveMessage(PubsubMessage pubsubMessage, AckReplyConsumer ackReplyConsumer, MethodListener method, Object bean,
+								FailureHandler failureHandler, @Nullable MessageDeduplicator deduplicator) {
+		log.trace("PUB/SUB Message Receive: {}", pubsubMessage.getMessageId());
+
+		if (deduplicator != null && deduplicator.isDuplicate(pubsubMessage)) {
+			log.debug("PUB/SUB Message [{}] duplicated", pubsubMessage.getMessageId());
 			ackReplyConsumer.ack();
+			return;
+		}
+
+		AckReplyConsumer listenerAckReplyConsumer = ackReplyConsumer;
+		if (deduplicator != null && method.isManualAck()) {
+			// Con ack manual el mensaje solo cuenta como procesado si el listener hace ack
+			listenerAckReplyConsumer = new AckReplyConsumer() {
+				@Override
+				public void ack() {
+					ackReplyConsumer.ack();
+					deduplicator.markProcessed(pubsubMessage);
+				}
+
+				@Override
+				public void nack() {
+					ackReplyConsumer.nack();
+				}
+			};
+		}
+
+		MessageArgumentResolver[] resolvers = method.getResolvers();
+		Object[] values = new Object[resolvers.length];
+
+		try {
+			for (int i = 0; i < resolvers.length; i++) {
+				values[i] = resolvers[i].resolve(pubsubMessage, listenerAckReplyConsumer);
+			}
+		} catch (IOException | RuntimeException e) {
+			log.error("PUB/SUB Message [{}] decode error", pubsubMessage.getMessageId(), e);
+			failureHandler.onFailure(pubsubMessage, ackReplyConsumer, e);
+			return;
+		}
+
+		try {
+			method.getMethod().invoke(bean, values);
+			if (!method.isManualAck()) {
+				ackReplyConsumer.ack();
+				if (deduplicator != null) {
+					deduplicator.markProcessed(pubsubMessage);
+				}
+			}
 		} catch (IllegalAccessException | InvocationTargetException e) {
 			log.error("PUB/SUB Message [{}] invoke error", pubsubMessage.getMessageId(), e);
+			failureHandler.onFailure(pubsubMessage, ackReplyConsumer, e instanceof InvocationTargetException ? e.getCause() : e);
 		}
 	}
 
@@ -96,7 +385,7 @@ public class PubSubListenerAnnotationBeanPostProcessor implements BeanPostProces
 		return "";
 	}
 
-	private static List<MethodListener> findMethods(final Class<?> type) {
+	private List<MethodListener> findMethods(final Class<?> type) {
 		final List<MethodListener> methods = new ArrayList<>();
 		Class<?> klass = type;
 		while (klass != Object.class) {
@@ -111,7 +400,7 @@ public class PubSubListenerAnnotationBeanPostProcessor implements BeanPostProces
 		return methods;
 	}
 
-	private static MethodListener validateMethod(Method method) {
+	private MethodListener validateMethod(Method method) {
 		Class<?> clazz = method.getDeclaringClass();
 		PubSubListener annotation = method.getAnnotation(PubSubListener.class);
 		String[] subscriptions = annotation.subscriptions();
@@ -121,46 +410,161 @@ public class PubSubListenerAnnotationBeanPostProcessor implements BeanPostProces
 			throw new IllegalArgumentException(error);
 		}
 
-		boolean hasPub = false;
-		boolean hasString = false;
+		if (annotation.maxDeliveryAttempts() > 0 && StringUtils.isBlank(annotation.deadLetterTopic())) {
+			String error = String.format("Method %s annotate with @PubSubListener in class %s has maxDeliveryAttempts without deadLetterTopic", method.getName(), clazz.getSimpleName());
+			throw new IllegalArgumentException(error);
+		}
 
 		Class<?>[] parameterTypes = method.getParameterTypes();
+		Type[] genericParameterTypes = method.getGenericParameterTypes();
+		if (parameterTypes.length == 1 && parameterTypes[0] == List.class) {
+			return validateBatchMethod(method, annotation, genericParameterTypes[0]);
+		}
+
+		boolean hasPub = false;
+		boolean hasPayload = false;
+		boolean hasAckReply = false;
+
+		MessageArgumentResolver[] resolvers = new MessageArgumentResolver[parameterTypes.length];
 		for (int i = 0; i < parameterTypes.length; i++) {
-			if (i > 1) {
-				String error = String.format("Method %s annotate with @PubSubListener in class %s has more that 2 parameters", method.getName(), clazz.getSimpleName());
+			if (i > 2) {
+				String error = String.format("Method %s annotate with @PubSubListener in class %s has more that 3 parameters", method.getName(), clazz.getSimpleName());
 				throw new IllegalArgumentException(error);
 			}
 
-			if (!parameterTypes[i].isAssignableFrom(PubsubMessage.class) && !parameterTypes[i].isAssignableFrom(String.class)) {
-				String error = String.format("Method %s annotate with @PubSubListener in class %s parameters not allowed, only [%s, %s]", method.getName(), clazz.getSimpleName(), PubsubMessage.class.getSimpleName(), String.class.getSimpleName());
-				throw new IllegalArgumentException(error);
+			if (parameterTypes[i].isAssignableFrom(PubsubMessage.class)) {
+				if (hasPub) {
+					String error = String.format("Method %s annotate with @PubSubListener in class %s has more than one %s parameter", method.getName(), clazz.getSimpleName(), PubsubMessage.class.getSimpleName());
+					throw new IllegalArgumentException(error);
+				}
+				hasPub = true;
+				resolvers[i] = (message, ackReplyConsumer) -> message;
+			} else if (parameterTypes[i] == AckReplyConsumer.class) {
+				if (hasAckReply) {
+					String error = String.format("Method %s annotate with @PubSubListener in class %s has more than one %s parameter", method.getName(), clazz.getSimpleName(), AckReplyConsumer.class.getSimpleName());
+					throw new IllegalArgumentException(error);
+				}
+				hasAckReply = true;
+				resolvers[i] = (message, ackReplyConsumer) -> ackReplyConsumer;
 			} else {
-				if (parameterTypes[i].isAssignableFrom(PubsubMessage.class)) {
-					if (hasPub) {
-						String error = String.format("Method %s annotate with @PubSubListener in class %s parameters not allowed, only [%s, %s]", method.getName(), clazz.getSimpleName(), PubsubMessage.class.getSimpleName(), String.class.getSimpleName());
-						throw new IllegalArgumentException(error);
-					} else {
-						hasPub = true;
-					}
-				} else {
-					if (hasString) {
-						String error = String.format("Method %s annotate with @PubSubListener in class %s parameters not allowed, only [%s, %s]", method.getName(), clazz.getSimpleName(), PubsubMessage.class.getSimpleName(), String.class.getSimpleName());
-						throw new IllegalArgumentException(error);
-					} else {
-						hasString = true;
-					}
+				if (hasPayload) {
+					String error = String.format("Method %s annotate with @PubSubListener in class %s has more than one payload parameter", method.getName(), clazz.getSimpleName());
+					throw new IllegalArgumentException(error);
 				}
+				hasPayload = true;
+				PayloadDecoder<?> decoder = getPayloadDecoder(parameterTypes[i], genericParameterTypes[i]);
+				if (decoder == null) {
+					String error = String.format("Method %s annotate with @PubSubListener in class %s has not a codec for parameter type %s", method.getName(), clazz.getSimpleName(), genericParameterTypes[i].getTypeName());
+					throw new IllegalArgumentException(error);
+				}
+				resolvers[i] = (message, ackReplyConsumer) -> decoder.decode(message.getData());
 			}
 		}
 
-		return new MethodListener(method, subscriptions);
+		return new MethodListener(method, annotation, subscriptions, resolvers, false, hasAckReply);
+	}
+
+	/**
+	 * Modo batch: un unico parametro List de {@link PubsubMessage} o de payloads, y retorno void o {@link BatchListenerResult}
+	 */
+	private MethodListener validateBatchMethod(Method method, PubSubListener annotation, Type listType) {
+		Class<?> clazz = method.getDeclaringClass();
+		Type elementType = listType instanceof ParameterizedType ? ((ParameterizedType) listType).getActualTypeArguments()[0] : null;
+		Class<?> elementClass = null;
+		if (elementType instanceof Class) {
+			elementClass = (Class<?>) elementType;
+		} else if (elementType instanceof ParameterizedType) {
+			elementClass = (Class<?>) ((ParameterizedType) elementType).getRawType();
+		}
+		if (elementClass == null) {
+			String error = String.format("Method %s annotate with @PubSubListener in class %s has a List parameter without a concrete element type", method.getName(), clazz.getSimpleName());
+			throw new IllegalArgumentException(error);
+		}
+
+		Class<?> returnType = method.getReturnType();
+		if (returnType != void.class && returnType != BatchListenerResult.class) {
+			String error = String.format("Method %s annotate with @PubSubListener in class %s in batch mode must return void or %s", method.getName(), clazz.getSimpleName(), BatchListenerResult.class.getSimpleName());
+			throw new IllegalArgumentException(error);
+		}
+
+		MessageArgumentResolver resolver;
+		if (elementClass == PubsubMessage.class) {
+			resolver = (message, ackReplyConsumer) -> message;
+		} else {
+			PayloadDecoder<?> decoder = getPayloadDecoder(elementClass, elementType);
+			if (decoder == null) {
+				String error = String.format("Method %s annotate with @PubSubListener in class %s has not a codec for parameter type %s", method.getName(), clazz.getSimpleName(), elementType.getTypeName());
+				throw new IllegalArgumentException(error);
+			}
+			resolver = (message, ackReplyConsumer) -> decoder.decode(message.getData());
+		}
 
+		return new MethodListener(method, annotation, annotation.subscriptions(), new MessageArgumentResolver[]{resolver}, true, false);
+	}
+
+	/**
+	 * Los tipos binarios son vistas de solo lectura sobre el ByteString del mensaje, sin copia salvo byte[]
+	 */
+	@Nullable
+	private PayloadDecoder<?> getPayloadDecoder(Class<?> parameterType, Type genericParameterType) {
+		if (parameterType == String.class) {
+			return ByteString::toStringUtf8;
+		}
+		if (parameterType == ByteString.class) {
+			return data -> data;
+		}
+		if (parameterType == ByteBuffer.class) {
+			return ByteString::asReadOnlyByteBuffer;
+		}
+		if (parameterType == InputStream.class) {
+			return ByteString::newInput;
+		}
+		if (parameterType == byte[].class) {
+			return ByteString::toByteArray;
+		}
+		for (MessageCodec messageCodec : messageCodecs) {
+			PayloadDecoder<?> decoder = messageCodec.getDecoder(genericParameterType);
+			if (decoder != null) {
+				return decoder;
+			}
+		}
+		return null;
 	}
 
 	@RequiredArgsConstructor
 	@Getter
 	private static class MethodListener {
 		private final Method method;
+		private final PubSubListener annotation;
 		private final String[] subscriptions;
+		private final MessageArgumentResolver[] resolvers;
+		private final boolean batch;
+		/**
+		 * El listener recibe el {@link AckReplyConsumer} y responde el mismo, solo se aplica la politica de fallo
+		 */
+		private final boolean manualAck;
+	}
+
+	/**
+	 * Receptor de un listener y las acciones que lo paran
+	 */
+	@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+	@Getter(AccessLevel.PACKAGE)
+	static class ListenerReceiver implements AutoCloseable {
+		private final MessageReceiver receiver;
+		/**
+		 * Entrega los mensajes que esperan en un lote, al parar el subscriber y antes de esperar a los mensajes en proceso
+		 */
+		private final Runnable flushAction;
+		/**
+		 * Libera los recursos del receptor (batcher, reintentos) al destruir el contenedor
+		 */
+		private final Runnable closeAction;
+
+		@Override
+		public void close() {
+			flushAction.run();
+			closeAction.run();
+		}
 	}
 }
@@ -0,0 +1,138 @@
+package com.victorlh.gcp.spring.libpubsub.consumer;
+
+import com.victorlh.gcp.spring.libpubsub.conf.PubSubProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.SmartLifecycle;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Arranca los subscribers de los {@link PubSubListener} cuando el contexto termina de refrescarse y los para
+ * esperando a los mensajes en proceso antes de destruir el resto de beans.
+ * Permite pausar y reanudar cada suscripcion para descargar la instancia.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class PubSubListenerContainer implements SmartLifecycle, DisposableBean {
+
+	public static final String PUBSUB_LISTENER_CONTAINER_BEAN_NAME = "PubSubListenerContainer";
+
+	private final PubSubProperties pubSubProperties;
+
+	private final Map<String, List<ManagedSubscriber>> subscribers = new ConcurrentHashMap<>();
+	private final List<Runnable> flushActions = new CopyOnWriteArrayList<>();
+	private final List<Runnable> closeActions = new CopyOnWriteArrayList<>();
+
+	private volatile boolean running;
+
+	void register(ManagedSubscriber subscriber, Runnable flushAction, Runnable closeAction) {
+		subscribers.computeIfAbsent(subscriber.getSubscription(), key -> new CopyOnWriteArrayList<>()).add(subscriber);
+		flushActions.add(flushAction);
+		closeActions.add(closeAction);
+		if (running) {
+			subscriber.start();
+		}
+	}
+
+	@Override
+	public synchronized void start() {
+		if (running) {
+			return;
+		}
+		List<ManagedSubscriber> all = getAll();
+		boolean parallel = pubSubProperties.isParallelSubscriberStartup();
+		for (ManagedSubscriber subscriber : all) {
+			subscriber.start();
+			if (!parallel) {
+				subscriber.awaitRunning();
+			}
+		}
+		if (parallel) {
+			all.forEach(ManagedSubscriber::awaitRunning);
+		}
+		running = true;
+		log.info("PUB/SUB {} subscribers started", all.size());
+	}
+
+	/**
+	 * Para todos los subscribers a la vez, entrega los lotes pendientes y espera a los mensajes en proceso con un unico plazo comun
+	 */
+	@Override
+	public synchronized void stop() {
+		if (!running) {
+			return;
+		}
+		running = false;
+		List<ManagedSubscriber> all = getAll();
+		all.forEach(ManagedSubscriber::stop);
+		// Los lotes se entregan mientras los subscribers aun pueden enviar los acks
+		flushActions.forEach(Runnable::run);
+
+		Duration timeout = pubSubProperties.getSubscriberShutdownTimeout();
+		long deadline = System.nanoTime() + timeout.toNanos();
+		for (ManagedSubscriber subscriber : all) {
+			Duration remaining = Duration.ofNanos(Math.max(0, deadline - System.nanoTime()));
+			if (!subscriber.awaitTerminated(remaining)) {
+				log.warn("PUB/SUB subscriber {} not drained in {}", subscriber.getSubscription(), timeout);
+			}
+		}
+		log.info("PUB/SUB {} subscribers stopped", all.size());
+	}
+
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+
+	@Override
+	public boolean isAutoStartup() {
+		return pubSubProperties.isListenerAutoStartup();
+	}
+
+	@Override
+	public void destroy() {
+		stop();
+		closeActions.forEach(Runnable::run);
+	}
+
+	public void pause(String subscription) {
+		getSubscribers(subscription).forEach(ManagedSubscriber::pause);
+		log.info("PUB/SUB subscription {} paused", subscription);
+	}
+
+	public void resume(String subscription) {
+		getSubscribers(subscription).forEach(ManagedSubscriber::resume);
+		log.info("PUB/SUB subscription {} resumed", subscription);
+	}
+
+	public boolean isPaused(String subscription) {
+		return getSubscribers(subscription).stream().allMatch(ManagedSubscriber::isPaused);
+	}
+
+	public Set<String> getSubscriptions() {
+		return subscribers.keySet();
+	}
+
+	private List<ManagedSubscriber> getSubscribers(String subscription) {
+		List<ManagedSubscriber> list = subscribers.get(subscription);
+		if (list == null) {
+			String error = String.format("Subscription %s has not listeners", subscription);
+			throw new IllegalArgumentException(error);
+		}
+		return list;
+	}
+
+	private List<ManagedSubscriber> getAll() {
+		List<ManagedSubscriber> all = new ArrayList<>();
+		subscribers.values().forEach(all::addAll);
+		return all;
+	}
+}
@@ -0,0 +1,13 @@
+package com.victorlh.gcp.spring.libpubsub.consumer;
+
+public enum PullMode {
+	/**
+	 * Subscriber del cliente con streaming pull, el servidor empuja mensajes segun el flow control
+	 */
+	STREAMING,
+	/**
+	 * Pull sincrono con SubscriberStub: se piden como maximo pullMaxMessages y nunca se retienen mas de
+	 * maxOutstandingMessages. Los acks se envian agrupados.
+	 */
+	SYNCHRONOUS
+}
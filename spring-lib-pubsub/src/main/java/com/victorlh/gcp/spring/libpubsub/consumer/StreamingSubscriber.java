@@ -0,0 +1,100 @@
+package com.victorlh.gcp.spring.libpubsub.consumer;
+
+import com.google.cloud.pubsub.v1.Subscriber;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * {@link Subscriber} de streaming pull. El cliente no permite pausar ni reutilizar un Subscriber,
+ * asi que pausar lo para y reanudar construye uno nuevo con el mismo builder.
+ */
+@Slf4j
+class StreamingSubscriber implements ManagedSubscriber {
+
+	@Getter
+	private final String subscription;
+	private final Subscriber.Builder builder;
+
+	private Subscriber subscriber;
+	private boolean paused;
+
+	StreamingSubscriber(String subscription, Subscriber.Builder builder) {
+		this.subscription = subscription;
+		this.builder = builder;
+	}
+
+	@Override
+	public synchronized void start() {
+		if (subscriber != null && subscriber.isRunning()) {
+			return;
+		}
+		paused = false;
+		subscriber = builder.build();
+		subscriber.startAsync();
+	}
+
+	@Override
+	public void awaitRunning() {
+		Subscriber current = getSubscriber();
+		if (current == null) {
+			return;
+		}
+		try {
+			current.awaitRunning();
+		} catch (IllegalStateException e) {
+			log.error("PUB/SUB subscriber {} failed to start", subscription, e);
+		}
+	}
+
+	@Override
+	public synchronized void stop() {
+		if (subscriber != null) {
+			subscriber.stopAsync();
+		}
+	}
+
+	@Override
+	public boolean awaitTerminated(Duration timeout) {
+		Subscriber current = getSubscriber();
+		if (current == null) {
+			return true;
+		}
+		try {
+			current.awaitTerminated(timeout.toMillis(), TimeUnit.MILLISECONDS);
+			return true;
+		} catch (TimeoutException e) {
+			return false;
+		} catch (IllegalStateException e) {
+			log.error("PUB/SUB subscriber {} failed", subscription, e);
+			return true;
+		}
+	}
+
+	@Override
+	public synchronized void pause() {
+		if (!paused) {
+			paused = true;
+			stop();
+		}
+	}
+
+	@Override
+	public synchronized void resume() {
+		if (paused) {
+			start();
+		}
+	}
+
+	@Override
+	public synchronized boolean isPaused() {
+		return paused;
+	}
+
+	private synchronized Subscriber getSubscriber() {
+		return subscriber;
+	}
+}
@@ -0,0 +1,89 @@
+package com.victorlh.gcp.spring.libpubsub.consumer;
+
+import com.victorlh.gcp.spring.libpubsub.conf.PubSubProperties;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+import javax.annotation.Nullable;
+import java.time.Duration;
+
+/**
+ * Configuracion final de un subscriber: atributos de {@link PubSubListener}, despues gcp.pubsub.subscriptions.[nombre]
+ * y por ultimo gcp.pubsub.subscriber. Los valores null dejan el valor por defecto del cliente.
+ */
+@Builder
+@Getter
+@ToString
+public class SubscriberOptions {
+
+	private final Integer parallelPullCount;
+	private final Integer executorThreads;
+	private final Long maxOutstandingMessages;
+	private final Long maxOutstandingBytes;
+	private final Integer batchMaxSize;
+	private final Duration batchMaxWait;
+	private final PullMode pullMode;
+	private final Integer pullMaxMessages;
+	private final Integer ackDeadlineSeconds;
+	private final Duration ackFlushInterval;
+	private final Duration maxAckExtensionPeriod;
+
+	static SubscriberOptions resolve(PubSubListener annotation, @Nullable PubSubProperties properties, String subscription) {
+		PubSubProperties.SubscriberProperties defaults = properties == null ? null : properties.getSubscriber();
+		PubSubProperties.SubscriberProperties specific = properties == null ? null : properties.getSubscriptions().get(subscription);
+
+		return SubscriberOptions.builder()
+				.parallelPullCount(first(positive(annotation.parallelPullCount()),
+						specific == null ? null : specific.getParallelPullCount(),
+						defaults == null ? null : defaults.getParallelPullCount()))
+				.executorThreads(first(positive(annotation.executorThreads()),
+						specific == null ? null : specific.getExecutorThreads(),
+						defaults == null ? null : defaults.getExecutorThreads()))
+				.maxOutstandingMessages(first(positive(annotation.maxOutstandingMessages()),
+						specific == null ? null : specific.getMaxOutstandingMessages(),
+						defaults == null ? null : defaults.getMaxOutstandingMessages()))
+				.maxOutstandingBytes(first(positive(annotation.maxOutstandingBytes()),
+						specific == null ? null : specific.getMaxOutstandingBytes(),
+						defaults == null ? null : defaults.getMaxOutstandingBytes()))
+				.batchMaxSize(first(positive(annotation.batchMaxSize()),
+						specific == null ? null : specific.getBatchMaxSize(),
+						defaults == null ? null : defaults.getBatchMaxSize()))
+				.batchMaxWait(first(annotation.batchMaxWaitMillis() > 0 ? Duration.ofMillis(annotation.batchMaxWaitMillis()) : null,
+						specific == null ? null : specific.getBatchMaxWait(),
+						defaults == null ? null : defaults.getBatchMaxWait()))
+				.pullMode(annotation.pullMode())
+				.pullMaxMessages(first(positive(annotation.pullMaxMessages()),
+						specific == null ? null : specific.getPullMaxMessages(),
+						defaults == null ? null : defaults.getPullMaxMessages()))
+				.ackDeadlineSeconds(first(positive(annotation.ackDeadlineSeconds()),
+						specific == null ? null : specific.getAckDeadlineSeconds(),
+						defaults == null ? null : defaults.getAckDeadlineSeconds()))
+				.ackFlushInterval(first(specific == null ? null : specific.getAckFlushInterval(),
+						defaults == null ? null : defaults.getAckFlushInterval()))
+				.maxAckExtensionPeriod(first(specific == null ? null : specific.getMaxAckExtensionPeriod(),
+						defaults == null ? null : defaults.getMaxAckExtensionPeriod()))
+				.build();
+	}
+
+	@Nullable
+	private static Integer positive(int value) {
+		return value > 0 ? value : null;
+	}
+
+	@Nullable
+	private static Long positive(long value) {
+		return value > 0 ? value : null;
+	}
+
+	@Nullable
+	@SafeVarargs
+	private static <V> V first(V... values) {
+		for (V value : values) {
+			if (value != null) {
+				return value;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,371 @@
+package com.victorlh.gcp.spring.libpubsub.consumer;
+
+import com.google.cloud.pubsub.v1.AckReplyConsumer;
+import com.google.cloud.pubsub.v1.MessageReceiver;
+import com.google.cloud.pubsub.v1.stub.SubscriberStub;
+import com.google.pubsub.v1.AcknowledgeRequest;
+import com.google.pubsub.v1.ModifyAckDeadlineRequest;
+import com.google.pubsub.v1.PullRequest;
+import com.google.pubsub.v1.PullResponse;
+import com.google.pubsub.v1.ReceivedMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Consumidor con pull sincrono. Un hilo hace pull de como maximo los mensajes que quedan libres hasta
+ * maxOutstanding, los reparte en el executor y extiende su ack deadline mientras se procesan, como mucho durante
+ * maxAckExtensionPeriod. Los ack y nack se acumulan y se envian en una sola peticion cada ackFlushInterval.
+ */
+@Slf4j
+class SynchronousPullSubscriber implements ManagedSubscriber {
+
+	private static final int MAX_ACK_IDS_PER_REQUEST = 2500;
+	private static final long PULL_ERROR_BACKOFF_MILLIS = 1000;
+	private static final long DRAIN_POLL_MILLIS = 50;
+
+	private final String subscription;
+	private final String name;
+	private final Supplier<SubscriberStub> stubFactory;
+	private final MessageReceiver receiver;
+	private final int maxMessagesPerPull;
+	private final int maxOutstanding;
+	private final int executorThreads;
+	private final int ackDeadlineSeconds;
+	private final Duration ackFlushInterval;
+	private final Duration maxAckExtensionPeriod;
+
+	/**
+	 * Mensajes sin respuesta, por ackId, con el instante de recepcion en nanos
+	 */
+	private final Map<String, Long> inFlight = new ConcurrentHashMap<>();
+	private final Queue<String> pendingAcks = new ConcurrentLinkedQueue<>();
+	private final Queue<String> pendingNacks = new ConcurrentLinkedQueue<>();
+	private final Object pauseLock = new Object();
+
+	private Semaphore outstanding;
+	private SubscriberStub stub;
+	private ExecutorService executor;
+	private ScheduledExecutorService scheduler;
+	private Thread pullThread;
+
+	private volatile boolean running;
+	private volatile boolean paused;
+
+	SynchronousPullSubscriber(String subscription, Supplier<SubscriberStub> stubFactory, MessageReceiver receiver, int maxMessagesPerPull,
+							  int maxOutstanding, int executorThreads, int ackDeadlineSeconds, Duration ackFlushInterval,
+							  Duration maxAckExtensionPeriod) {
+		this.subscription = subscription;
+		this.name = subscription.substring(subscription.lastIndexOf('/') + 1);
+		this.stubFactory = stubFactory;
+		this.receiver = receiver;
+		this.maxMessagesPerPull = maxMessagesPerPull;
+		this.maxOutstanding = maxOutstanding;
+		this.executorThreads = executorThreads;
+		this.ackDeadlineSeconds = ackDeadlineSeconds;
+		this.ackFlushInterval = ackFlushInterval;
+		this.maxAckExtensionPeriod = maxAckExtensionPeriod;
+	}
+
+	@Override
+	public String getSubscription() {
+		return name;
+	}
+
+	@Override
+	public synchronized void start() {
+		if (running) {
+			return;
+		}
+		// Las respuestas tardias de una ejecucion anterior no deben liberar huecos de esta
+		inFlight.clear();
+		pendingAcks.clear();
+		pendingNacks.clear();
+		outstanding = new Semaphore(maxOutstanding);
+		stub = stubFactory.get();
+		executor = Executors.newFixedThreadPool(executorThreads, daemonThreadFactory("pubsub-sync-" + name + "-"));
+		scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreadFactory("pubsub-sync-ack-" + name + "-"));
+		pullThread = daemonThreadFactory("pubsub-sync-pull-" + name + "-").newThread(this::pullLoop);
+
+		running = true;
+		paused = false;
+		long flushMillis = ackFlushInterval.toMillis();
+		scheduler.scheduleWithFixedDelay(this::flushReplies, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+		long extendSeconds = Math.max(1, ackDeadlineSeconds / 2);
+		scheduler.scheduleWithFixedDelay(this::extendInFlightDeadlines, extendSeconds, extendSeconds, TimeUnit.SECONDS);
+		pullThread.start();
+	}
+
+	@Override
+	public void awaitRunning() {
+	}
+
+	@Override
+	public synchronized void stop() {
+		if (!running) {
+			return;
+		}
+		running = false;
+		synchronized (pauseLock) {
+			pauseLock.notifyAll();
+		}
+		pullThread.interrupt();
+		executor.shutdown();
+	}
+
+	/**
+	 * Espera a que terminen los mensajes en proceso, incluidos los que esperan en un lote, y envia los acks pendientes
+	 */
+	@Override
+	public synchronized boolean awaitTerminated(Duration timeout) {
+		if (executor == null || scheduler.isShutdown()) {
+			return true;
+		}
+		long deadline = System.nanoTime() + timeout.toNanos();
+		boolean terminated = false;
+		try {
+			// El hilo de pull puede tener mensajes recibidos sin repartir, se espera a que los nackee
+			pullThread.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+			terminated = executor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+			while (!inFlight.isEmpty() && System.nanoTime() < deadline) {
+				flushReplies();
+				Thread.sleep(DRAIN_POLL_MILLIS);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		terminated = terminated && !pullThread.isAlive() && inFlight.isEmpty();
+		if (!terminated) {
+			log.warn("PUB/SUB subscriber {} stopped with {} messages in process", subscription, inFlight.size());
+		}
+		scheduler.shutdownNow();
+		flushReplies();
+		stub.shutdownNow();
+		return terminated;
+	}
+
+	@Override
+	public void pause() {
+		paused = true;
+	}
+
+	@Override
+	public void resume() {
+		synchronized (pauseLock) {
+			paused = false;
+			pauseLock.notifyAll();
+		}
+	}
+
+	@Override
+	public boolean isPaused() {
+		return paused;
+	}
+
+	private void awaitResume() throws InterruptedException {
+		synchronized (pauseLock) {
+			while (paused && running) {
+				pauseLock.wait();
+			}
+		}
+	}
+
+	private void pullLoop() {
+		while (running) {
+			int permits;
+			try {
+				awaitResume();
+				if (!running) {
+					return;
+				}
+				permits = acquirePermits();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+
+			PullResponse response;
+			try {
+				PullRequest request = PullRequest.newBuilder()
+						.setSubscription(subscription)
+						.setMaxMessages(permits)
+						.build();
+				response = stub.pullCallable().call(request);
+			} catch (RuntimeException e) {
+				outstanding.release(permits);
+				if (!running) {
+					return;
+				}
+				log.warn("PUB/SUB pull error on {}", subscription, e);
+				if (!sleep(PULL_ERROR_BACKOFF_MILLIS)) {
+					return;
+				}
+				continue;
+			}
+
+			List<ReceivedMessage> messages = response.getReceivedMessagesList();
+			outstanding.release(permits - messages.size());
+			if (messages.isEmpty()) {
+				continue;
+			}
+
+			long receivedNanos = System.nanoTime();
+			List<String> ackIds = new ArrayList<>(messages.size());
+			for (ReceivedMessage message : messages) {
+				ackIds.add(message.getAckId());
+				inFlight.put(message.getAckId(), receivedNanos);
+			}
+			extendDeadlines(ackIds);
+
+			for (int i = 0; i < messages.size(); i++) {
+				ReceivedMessage message = messages.get(i);
+				try {
+					executor.execute(() -> dispatch(message));
+				} catch (RejectedExecutionException e) {
+					// stop() ha cerrado el executor despues del pull: se nackean los que faltan para que se reenvien ya
+					List<ReceivedMessage> rejected = messages.subList(i, messages.size());
+					log.debug("PUB/SUB subscriber {} stopped, nacking {} pulled messages", subscription, rejected.size());
+					rejected.forEach(rejectedMessage -> reply(rejectedMessage.getAckId(), pendingNacks));
+					return;
+				}
+			}
+		}
+	}
+
+	private void dispatch(ReceivedMessage message) {
+		AckReplyConsumer ackReplyConsumer = newAckReplyConsumer(message.getAckId());
+		try {
+			receiver.receiveMessage(message.getMessage(), ackReplyConsumer);
+		} catch (RuntimeException e) {
+			log.error("PUB/SUB Message [{}] receive error", message.getMessage().getMessageId(), e);
+			ackReplyConsumer.nack();
+		}
+	}
+
+	/**
+	 * Espera a que haya al menos un hueco y coge todos los libres hasta maxMessagesPerPull
+	 */
+	private int acquirePermits() throws InterruptedException {
+		outstanding.acquire();
+		int permits = 1 + outstanding.drainPermits();
+		if (permits > maxMessagesPerPull) {
+			outstanding.release(permits - maxMessagesPerPull);
+			permits = maxMessagesPerPull;
+		}
+		return permits;
+	}
+
+	private AckReplyConsumer newAckReplyConsumer(String ackId) {
+		return new AckReplyConsumer() {
+			@Override
+			public void ack() {
+				reply(ackId, pendingAcks);
+			}
+
+			@Override
+			public void nack() {
+				reply(ackId, pendingNacks);
+			}
+		};
+	}
+
+	private void reply(String ackId, Queue<String> queue) {
+		// Solo cuenta la primera respuesta de cada mensaje
+		if (inFlight.remove(ackId) != null) {
+			queue.add(ackId);
+			outstanding.release();
+		}
+	}
+
+	/**
+	 * Extiende los mensajes en proceso y suelta los que superan maxAckExtensionPeriod sin respuesta: dejan de contar
+	 * para maxOutstanding y Pub/Sub los vuelve a entregar cuando vence su deadline. Una respuesta tardia se ignora
+	 */
+	private void extendInFlightDeadlines() {
+		long expiredBefore = System.nanoTime() - maxAckExtensionPeriod.toNanos();
+		List<String> ackIds = new ArrayList<>(inFlight.size());
+		for (Map.Entry<String, Long> entry : inFlight.entrySet()) {
+			if (entry.getValue() - expiredBefore > 0) {
+				ackIds.add(entry.getKey());
+			} else if (inFlight.remove(entry.getKey()) != null) {
+				log.warn("PUB/SUB message on {} without reply after {}, releasing it", subscription, maxAckExtensionPeriod);
+				outstanding.release();
+			}
+		}
+		extendDeadlines(ackIds);
+	}
+
+	private void flushReplies() {
+		try {
+			List<String> acks = drain(pendingAcks);
+			for (int i = 0; i < acks.size(); i += MAX_ACK_IDS_PER_REQUEST) {
+				AcknowledgeRequest request = AcknowledgeRequest.newBuilder()
+						.setSubscription(subscription)
+						.addAllAckIds(acks.subList(i, Math.min(acks.size(), i + MAX_ACK_IDS_PER_REQUEST)))
+						.build();
+				stub.acknowledgeCallable().call(request);
+			}
+			modifyAckDeadline(drain(pendingNacks), 0);
+		} catch (RuntimeException e) {
+			log.warn("PUB/SUB ack error on {}, messages will be redelivered", subscription, e);
+		}
+	}
+
+	private void extendDeadlines(List<String> ackIds) {
+		try {
+			modifyAckDeadline(ackIds, ackDeadlineSeconds);
+		} catch (RuntimeException e) {
+			log.warn("PUB/SUB modifyAckDeadline error on {}", subscription, e);
+		}
+	}
+
+	private void modifyAckDeadline(List<String> ackIds, int seconds) {
+		for (int i = 0; i < ackIds.size(); i += MAX_ACK_IDS_PER_REQUEST) {
+			ModifyAckDeadlineRequest request = ModifyAckDeadlineRequest.newBuilder()
+					.setSubscription(subscription)
+					.addAllAckIds(ackIds.subList(i, Math.min(ackIds.size(), i + MAX_ACK_IDS_PER_REQUEST)))
+					.setAckDeadlineSeconds(seconds)
+					.build();
+			stub.modifyAckDeadlineCallable().call(request);
+		}
+	}
+
+	private static List<String> drain(Queue<String> queue) {
+		List<String> ackIds = new ArrayList<>();
+		String ackId;
+		while ((ackId = queue.poll()) != null) {
+			ackIds.add(ackId);
+		}
+		return ackIds;
+	}
+
+	private static boolean sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	private static CustomizableThreadFactory daemonThreadFactory(String prefix) {
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(prefix);
+		threadFactory.setDaemon(true);
+		return threadFactory;
+	}
+}
@@ -0,0 +1,19 @@
+package com.victorlh.gcp.spring.libpubsub.dedup;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+@Builder
+@Getter
+@ToString
+public class DeduplicationStats {
+
+	private final long checkCount;
+	private final long duplicateCount;
+	private final long size;
+
+	public double getHitRate() {
+		return checkCount == 0 ? 0 : (double) duplicateCount / checkCount;
+	}
+}
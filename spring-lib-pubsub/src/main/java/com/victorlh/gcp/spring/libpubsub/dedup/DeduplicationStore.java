@@ -0,0 +1,12 @@
+package com.victorlh.gcp.spring.libpubsub.dedup;
+
+/**
+ * Almacen compartido de claves ya procesadas, consultado cuando la clave no esta en la ventana en memoria.
+ * Se registra como bean, p.e. {@link FirestoreDeduplicationStore}.
+ */
+public interface DeduplicationStore {
+
+	boolean contains(String key);
+
+	void add(String key);
+}
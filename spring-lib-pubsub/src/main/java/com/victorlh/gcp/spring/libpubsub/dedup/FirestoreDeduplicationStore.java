@@ -0,0 +1,78 @@
+package com.victorlh.gcp.spring.libpubsub.dedup;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.WriteResult;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.victorlh.gcp.spring.libfirestore.utils.UtilFirestore;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Guarda las claves procesadas en una coleccion con el campo expireAt, que se puede usar como politica TTL de Firestore.
+ * Requiere spring-lib-firestore en el classpath. Si Firestore falla el mensaje se considera nuevo.
+ */
+@Slf4j
+public class FirestoreDeduplicationStore implements DeduplicationStore {
+
+	public static final String EXPIRE_AT_FIELD = "expireAt";
+
+	private final CollectionReference collectionReference;
+	private final Duration ttl;
+
+	public FirestoreDeduplicationStore(Firestore firestore, String collectionPath, Duration ttl, String... collectionPathValues) {
+		this.collectionReference = UtilFirestore.parseCollectionReference(firestore, collectionPath, collectionPathValues);
+		this.ttl = ttl;
+	}
+
+	@Override
+	public boolean contains(String key) {
+		try {
+			DocumentSnapshot snapshot = collectionReference.document(toDocumentId(key)).get().get();
+			if (!snapshot.exists()) {
+				return false;
+			}
+			Date expireAt = snapshot.getDate(EXPIRE_AT_FIELD);
+			return expireAt == null || expireAt.after(new Date());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} catch (ExecutionException e) {
+			log.warn("PUB/SUB deduplication read error for {}", key, e.getCause());
+			return false;
+		}
+	}
+
+	@Override
+	public void add(String key) {
+		Date expireAt = new Date(System.currentTimeMillis() + ttl.toMillis());
+		ApiFuture<WriteResult> apiFuture = collectionReference.document(toDocumentId(key)).set(Map.of(EXPIRE_AT_FIELD, expireAt));
+		ApiFutures.addCallback(apiFuture, new ApiFutureCallback<>() {
+			@Override
+			public void onFailure(Throwable t) {
+				log.warn("PUB/SUB deduplication write error for {}", key, t);
+			}
+
+			@Override
+			public void onSuccess(WriteResult result) {
+			}
+		}, MoreExecutors.directExecutor());
+	}
+
+	/**
+	 * Las claves pueden contener '/', que no es valido en un id de documento
+	 */
+	private static String toDocumentId(String key) {
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,24 @@
+package com.victorlh.gcp.spring.libpubsub.metrics;
+
+import com.google.cloud.pubsub.v1.AckReplyConsumer;
+
+/**
+ * Respuesta de un mensaje medido por {@link PubSubMetrics#instrument}. Cuando un mensaje se deja sin responder
+ * para que se reenvie al expirar el ack deadline se marca con {@link #noReply()}, asi deja de contar como en proceso.
+ */
+public interface InstrumentedAckReplyConsumer extends AckReplyConsumer {
+
+	/**
+	 * Termina la medicion del mensaje sin ack ni nack. Una respuesta posterior ya no se vuelve a medir
+	 */
+	void noReply();
+
+	/**
+	 * @param ackReplyConsumer - respuesta recibida por el listener, medida o no
+	 */
+	static void noReply(AckReplyConsumer ackReplyConsumer) {
+		if (ackReplyConsumer instanceof InstrumentedAckReplyConsumer) {
+			((InstrumentedAckReplyConsumer) ackReplyConsumer).noReply();
+		}
+	}
+}
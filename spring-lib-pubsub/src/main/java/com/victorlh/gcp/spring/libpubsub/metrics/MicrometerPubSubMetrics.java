@@ -0,0 +1,148 @@
+package com.victorlh.gcp.spring.libpubsub.metrics;
+
+import com.google.api.core.ApiFuture;
+import com.google.cloud.pubsub.v1.AckReplyConsumer;
+import com.google.cloud.pubsub.v1.MessageReceiver;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.protobuf.Timestamp;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publisher: timer pubsub.publish (topic, outcome), resumen pubsub.publish.batch.size y gauge pubsub.publish.outstanding.
+ * Listener: timer pubsub.listener.handling (subscription, outcome ack/nack/none) desde la recepcion hasta la respuesta,
+ * o hasta que el mensaje se deja sin responder (none),
+ * timer pubsub.listener.lag desde publishTime hasta la recepcion y gauge pubsub.listener.inflight.
+ */
+@RequiredArgsConstructor
+public class MicrometerPubSubMetrics implements PubSubMetrics {
+
+	private final MeterRegistry meterRegistry;
+
+	private final Map<String, AtomicLong> outstanding = new ConcurrentHashMap<>();
+	private final Map<String, AtomicLong> inFlight = new ConcurrentHashMap<>();
+	// Meters por topic ya registrados, para no buscarlos en el registry en cada publicacion
+	private final Map<String, Timer> publishSuccess = new ConcurrentHashMap<>();
+	private final Map<String, Timer> publishError = new ConcurrentHashMap<>();
+	private final Map<String, DistributionSummary> batchSizes = new ConcurrentHashMap<>();
+
+	@Override
+	public ApiFuture<String> recordPublish(String topic, long startNanos, ApiFuture<String> future) {
+		AtomicLong topicOutstanding = outstanding.computeIfAbsent(topic, key ->
+				meterRegistry.gauge("pubsub.publish.outstanding", Tags.of("topic", key), new AtomicLong()));
+		topicOutstanding.incrementAndGet();
+		future.addListener(() -> {
+			topicOutstanding.decrementAndGet();
+			Timer timer = isSuccess(future)
+					? publishSuccess.computeIfAbsent(topic, key -> publishTimer(key, "success"))
+					: publishError.computeIfAbsent(topic, key -> publishTimer(key, "error"));
+			timer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+		}, MoreExecutors.directExecutor());
+		return future;
+	}
+
+	@Override
+	public void recordBatchSize(String topic, int size) {
+		batchSizes.computeIfAbsent(topic, key -> DistributionSummary.builder("pubsub.publish.batch.size")
+				.tag("topic", key)
+				.register(meterRegistry))
+				.record(size);
+	}
+
+	@Override
+	public MessageReceiver instrument(String subscription, MessageReceiver receiver) {
+		// Los listeners de una misma suscripcion comparten el gauge
+		AtomicLong subscriptionInFlight = inFlight.computeIfAbsent(subscription, key ->
+				meterRegistry.gauge("pubsub.listener.inflight", Tags.of("subscription", key), new AtomicLong()));
+		Timer lag = Timer.builder("pubsub.listener.lag")
+				.tag("subscription", subscription)
+				.register(meterRegistry);
+		Timer acked = handlingTimer(subscription, "ack");
+		Timer nacked = handlingTimer(subscription, "nack");
+		Timer unanswered = handlingTimer(subscription, "none");
+
+		return (message, ackReplyConsumer) -> {
+			long startNanos = System.nanoTime();
+			Timestamp publishTime = message.getPublishTime();
+			long publishMillis = publishTime.getSeconds() * 1000 + publishTime.getNanos() / 1_000_000;
+			if (publishMillis > 0) {
+				lag.record(Math.max(0, System.currentTimeMillis() - publishMillis), TimeUnit.MILLISECONDS);
+			}
+			subscriptionInFlight.incrementAndGet();
+
+			// Solo la primera respuesta, o la marca de sin respuesta, termina la medicion
+			AtomicBoolean replied = new AtomicBoolean();
+			InstrumentedAckReplyConsumer instrumentedAckReplyConsumer = new InstrumentedAckReplyConsumer() {
+				@Override
+				public void ack() {
+					complete(acked);
+					ackReplyConsumer.ack();
+				}
+
+				@Override
+				public void nack() {
+					complete(nacked);
+					ackReplyConsumer.nack();
+				}
+
+				@Override
+				public void noReply() {
+					complete(unanswered);
+				}
+
+				private void complete(Timer timer) {
+					if (replied.compareAndSet(false, true)) {
+						subscriptionInFlight.decrementAndGet();
+						timer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+					}
+				}
+			};
+
+			try {
+				receiver.receiveMessage(message, instrumentedAckReplyConsumer);
+			} catch (RuntimeException | Error e) {
+				instrumentedAckReplyConsumer.noReply();
+				throw e;
+			}
+		};
+	}
+
+	private Timer publishTimer(String topic, String outcome) {
+		return Timer.builder("pubsub.publish")
+				.tag("topic", topic)
+				.tag("outcome", outcome)
+				.register(meterRegistry);
+	}
+
+	private Timer handlingTimer(String subscription, String outcome) {
+		return Timer.builder("pubsub.listener.handling")
+				.tag("subscription", subscription)
+				.tag("outcome", outcome)
+				.register(meterRegistry);
+	}
+
+	private static boolean isSuccess(ApiFuture<?> future) {
+		if (future.isCancelled()) {
+			return false;
+		}
+		try {
+			future.get();
+			return true;
+		} catch (ExecutionException e) {
+			return false;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+}
@@ -0,0 +1,33 @@
+package com.victorlh.gcp.spring.libpubsub.metrics;
+
+import com.google.api.core.ApiFuture;
+import com.google.cloud.pubsub.v1.MessageReceiver;
+
+/**
+ * Metricas de publishers y listeners. Si Micrometer esta en el classpath se registra {@link MicrometerPubSubMetrics},
+ * si no se usa {@link #NOOP}.
+ */
+public interface PubSubMetrics {
+
+	PubSubMetrics NOOP = new PubSubMetrics() {
+	};
+
+	/**
+	 * Registra la latencia de publicacion desde startNanos hasta que se completa el futuro
+	 *
+	 * @return El mismo futuro
+	 */
+	default ApiFuture<String> recordPublish(String topic, long startNanos, ApiFuture<String> future) {
+		return future;
+	}
+
+	default void recordBatchSize(String topic, int size) {
+	}
+
+	/**
+	 * Envuelve el receptor de una suscripcion para medir los mensajes recibidos
+	 */
+	default MessageReceiver instrument(String subscription, MessageReceiver receiver) {
+		return receiver;
+	}
+}
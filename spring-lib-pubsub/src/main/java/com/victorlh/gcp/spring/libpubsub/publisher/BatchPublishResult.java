@@ -0,0 +1,36 @@
+package com.victorlh.gcp.spring.libpubsub.publisher;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Resultado de un envio en lote, con un resultado por mensaje en el mismo orden de entrada
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class BatchPublishResult {
+
+	private final List<PublishResult> results;
+
+	public boolean hasFailures() {
+		return results.stream().anyMatch(r -> !r.isSuccess());
+	}
+
+	public List<String> getMessageIds() {
+		return results.stream()
+				.filter(PublishResult::isSuccess)
+				.map(PublishResult::getMessageId)
+				.collect(Collectors.toList());
+	}
+
+	public List<PublishResult> getFailures() {
+		return results.stream()
+				.filter(r -> !r.isSuccess())
+				.collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,24 @@
+package com.victorlh.gcp.spring.libpubsub.publisher;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Map;
+
+@Builder
+@Getter
+@ToString
+public class OutgoingMessage {
+
+	private final String data;
+	private final Map<String, String> attributes;
+	/**
+	 * Los mensajes con la misma clave se entregan en orden. Requiere gcp.pubsub.topics.[topic].message-ordering=true
+	 */
+	private final String orderingKey;
+
+	public static OutgoingMessage of(String data) {
+		return OutgoingMessage.builder().data(data).build();
+	}
+}
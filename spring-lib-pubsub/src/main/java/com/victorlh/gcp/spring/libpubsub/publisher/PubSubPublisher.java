@@ -1,25 +1,66 @@
 package com.victorlh.gcp.spring.libpubsub.publisher;
 
 import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutures;
+import com.google.api.gax.batching.BatchingSettings;
+import com.google.api.gax.batching.FlowControlSettings;
+import com.google.api.gax.batching.FlowController;
+import com.google.api.gax.core.NoCredentialsProvider;
+import com.google.api.gax.rpc.TransportChannelProvider;
 import com.google.auth.oauth2.GoogleCredentials;
 import com.google.auth.oauth2.ServiceAccountCredentials;
 import com.google.cloud.pubsub.v1.Publisher;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.protobuf.ByteString;
 import com.google.pubsub.v1.PubsubMessage;
 import com.google.pubsub.v1.TopicName;
+import com.victorlh.gcp.spring.libpubsub.conf.PubSubProperties;
+import com.victorlh.gcp.spring.libpubsub.metrics.PubSubMetrics;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.Nullable;
+
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 @Component
 @Slf4j
 @RequiredArgsConstructor
-public class PubSubPublisher {
+public class PubSubPublisher implements DisposableBean {
 
 	private final GoogleCredentials googleCredentials;
+	private final PubSubProperties pubSubProperties;
+
+	private final Map<String, Publisher> publishers = new ConcurrentHashMap<>();
+	private PubSubMetrics pubSubMetrics = PubSubMetrics.NOOP;
+	@Nullable
+	private TransportChannelProvider transportChannelProvider;
+
+	/**
+	 * Se inyecta automaticamente si Micrometer esta en el classpath, ver {@link PubSubMetrics}
+	 */
+	@Autowired(required = false)
+	public void setPubSubMetrics(PubSubMetrics pubSubMetrics) {
+		this.pubSubMetrics = pubSubMetrics;
+	}
+
+	/**
+	 * Publica por este canal y sin credenciales, p.e. contra el emulador o un servidor gRPC en memoria.
+	 * Solo afecta a los publishers creados despues de llamarlo
+	 */
+	public void setTransportChannelProvider(@Nullable TransportChannelProvider transportChannelProvider) {
+		this.transportChannelProvider = transportChannelProvider;
+	}
 
 	public ApiFuture<String> sendMessage(String topic, String message) {
 		return sendMessage(topic, message, null);
@@ -27,18 +68,75 @@ public class PubSubPublisher {
 	}
 
 	public ApiFuture<String> sendMessage(String topic, String message, Map<String, String> attributes) {
-		String projectId = getProjectId();
-		TopicName topicName = TopicName.of(projectId, topic);
+		PubsubMessage pubsubMessage = toPubsubMessage(message, attributes, null);
+		return publish(topic, getPublisher(topic), pubsubMessage);
+	}
 
-		Publisher publisher = null;
-		try {
-			publisher = Publisher.newBuilder(topicName)
-					.setCredentialsProvider(() -> googleCredentials)
-					.build();
-		} catch (IOException e) {
-			throw new RuntimeException(e);
+	/**
+	 * Reenvia un mensaje ya construido, p.e. uno recibido, sin volver a copiar el payload
+	 */
+	public ApiFuture<String> sendMessage(String topic, PubsubMessage message) {
+		return publish(topic, getPublisher(topic), message);
+	}
+
+	public ApiFuture<String> sendMessage(String topic, OutgoingMessage message) {
+		PubsubMessage pubsubMessage = toPubsubMessage(message.getData(), message.getAttributes(), message.getOrderingKey());
+		return publish(topic, getPublisher(topic), pubsubMessage);
+	}
+
+	/**
+	 * Envia todos los mensajes por el publisher del topic, que los agrupa segun su configuracion de batching.
+	 * Si falla un mensaje con ordering key, al terminar el lote se reanuda la publicacion de esa clave.
+	 *
+	 * @return Futuro que nunca falla, con el id o el error de cada mensaje en el orden de entrada
+	 */
+	public ApiFuture<BatchPublishResult> sendMessages(String topic, Collection<OutgoingMessage> messages) {
+		Publisher publisher = getPublisher(topic);
+		pubSubMetrics.recordBatchSize(topic, messages.size());
+
+		List<ApiFuture<PublishResult>> resultApiFutures = new ArrayList<>(messages.size());
+		for (OutgoingMessage message : messages) {
+			PubsubMessage pubsubMessage = toPubsubMessage(message.getData(), message.getAttributes(), message.getOrderingKey());
+			ApiFuture<String> publishApiFuture;
+			try {
+				publishApiFuture = publish(topic, publisher, pubsubMessage);
+			} catch (RuntimeException e) {
+				publishApiFuture = ApiFutures.immediateFailedFuture(e);
+			}
+			ApiFuture<PublishResult> resultApiFuture = ApiFutures.transform(publishApiFuture,
+					messageId -> PublishResult.success(message, messageId), MoreExecutors.directExecutor());
+			resultApiFutures.add(ApiFutures.catching(resultApiFuture, Throwable.class,
+					error -> PublishResult.failure(message, error), MoreExecutors.directExecutor()));
+		}
+
+		return ApiFutures.transform(ApiFutures.allAsList(resultApiFutures), results -> {
+			BatchPublishResult batchPublishResult = new BatchPublishResult(results);
+			batchPublishResult.getFailures().stream()
+					.map(result -> result.getMessage().getOrderingKey())
+					.filter(StringUtils::isNotEmpty)
+					.distinct()
+					.forEach(orderingKey -> {
+						log.warn("PUB/SUB resuming ordering key {} of {} after publish errors", orderingKey, topic);
+						publisher.resumePublish(orderingKey);
+					});
+			return batchPublishResult;
+		}, MoreExecutors.directExecutor());
+	}
+
+	private ApiFuture<String> publish(String topic, Publisher publisher, PubsubMessage pubsubMessage) {
+		long startNanos = System.nanoTime();
+		return pubSubMetrics.recordPublish(topic, startNanos, publisher.publish(pubsubMessage));
+	}
+
+	private boolean isMessageOrdering(String topic) {
+		PubSubProperties.PublisherProperties topicProperties = pubSubProperties.getTopics().get(topic);
+		if (topicProperties != null && topicProperties.getMessageOrdering() != null) {
+			return topicProperties.getMessageOrdering();
 		}
+		return Boolean.TRUE.equals(pubSubProperties.getPublisher().getMessageOrdering());
+	}
 
+	private static PubsubMessage toPubsubMessage(String message, Map<String, String> attributes, String orderingKey) {
 		ByteString data = ByteString.copyFromUtf8(message);
 		PubsubMessage.Builder builder = PubsubMessage.newBuilder()
 				.setData(data);
@@ -46,11 +144,93 @@ public class PubSubPublisher {
 		if (attributes != null) {
 			builder.putAllAttributes(attributes);
 		}
+		if (StringUtils.isNotEmpty(orderingKey)) {
+			builder.setOrderingKey(orderingKey);
+		}
+
+		return builder.build();
+	}
+
+	/**
+	 * Devuelve el publisher del topic, creandolo la primera vez. Se reutiliza para todos los envios y se cierra con el contexto
+	 */
+	public Publisher getPublisher(String topic) {
+		return publishers.computeIfAbsent(topic, this::newPublisher);
+	}
+
+	private Publisher newPublisher(String topic) {
+		String projectId = getProjectId();
+		TopicName topicName = TopicName.of(projectId, topic);
+
+		boolean messageOrdering = isMessageOrdering(topic);
+		try {
+			Publisher.Builder builder = Publisher.newBuilder(topicName)
+					.setCredentialsProvider(() -> googleCredentials)
+					.setBatchingSettings(getBatchingSettings(topic))
+					.setEnableMessageOrdering(messageOrdering);
+			if (transportChannelProvider != null) {
+				builder.setChannelProvider(transportChannelProvider)
+						.setCredentialsProvider(NoCredentialsProvider.create());
+			}
+			return builder.build();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
 
-		PubsubMessage pubsubMessage = builder.build();
-		return publisher.publish(pubsubMessage);
+	private BatchingSettings getBatchingSettings(String topic) {
+		BatchingSettings.Builder builder = Publisher.Builder.getDefaultBatchingSettings().toBuilder();
+		applyBatching(builder, pubSubProperties.getPublisher());
+		applyBatching(builder, pubSubProperties.getTopics().get(topic));
+		return builder.build();
+	}
+
+	private static void applyBatching(BatchingSettings.Builder builder, PubSubProperties.PublisherProperties properties) {
+		if (properties == null) {
+			return;
+		}
+		if (properties.getBatchElementCount() != null) {
+			builder.setElementCountThreshold(properties.getBatchElementCount());
+		}
+		if (properties.getBatchRequestBytes() != null) {
+			builder.setRequestByteThreshold(properties.getBatchRequestBytes());
+		}
+		if (properties.getBatchDelay() != null) {
+			builder.setDelayThreshold(org.threeten.bp.Duration.ofMillis(properties.getBatchDelay().toMillis()));
+		}
+		if (properties.getMaxOutstandingMessages() != null || properties.getMaxOutstandingBytes() != null) {
+			FlowControlSettings.Builder flowControl = builder.build().getFlowControlSettings().toBuilder()
+					.setLimitExceededBehavior(FlowController.LimitExceededBehavior.Block);
+			if (properties.getMaxOutstandingMessages() != null) {
+				flowControl.setMaxOutstandingElementCount(properties.getMaxOutstandingMessages());
+			}
+			if (properties.getMaxOutstandingBytes() != null) {
+				flowControl.setMaxOutstandingRequestBytes(properties.getMaxOutstandingBytes());
+			}
+			// Con Block el publisher usa los dos limites, el que no se configura queda sin limite
+			FlowControlSettings flowControlSettings = flowControl.build();
+			if (flowControlSettings.getMaxOutstandingElementCount() == null) {
+				flowControl.setMaxOutstandingElementCount(Long.MAX_VALUE);
+			}
+			if (flowControlSettings.getMaxOutstandingRequestBytes() == null) {
+				flowControl.setMaxOutstandingRequestBytes(Long.MAX_VALUE);
+			}
+			builder.setFlowControlSettings(flowControl.build());
+		}
 	}
 
+	@Override
+	public void destroy() throws InterruptedException {
+		publishers.values().forEach(Publisher::shutdown);
+		long deadline = System.nanoTime() + pubSubProperties.getPublisherShutdownTimeout().toNanos();
+		for (Publisher publisher : publishers.values()) {
+			long remaining = Math.max(0, deadline - System.nanoTime());
+			if (!publisher.awaitTermination(remaining, TimeUnit.NANOSECONDS)) {
+				log.warn("PUB/SUB publisher {} not terminated in {}", publisher.getTopicNameString(), pubSubProperties.getPublisherShutdownTimeout());
+			}
+		}
+		publishers.clear();
+	}
 
 	private String getProjectId() {
 		if (googleCredentials instanceof ServiceAccountCredentials) {
@@ -0,0 +1,32 @@
+package com.victorlh.gcp.spring.libpubsub.publisher;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import javax.annotation.Nullable;
+
+@Getter
+@ToString
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class PublishResult {
+
+	private final OutgoingMessage message;
+	@Nullable
+	private final String messageId;
+	@Nullable
+	private final Throwable error;
+
+	public static PublishResult success(OutgoingMessage message, String messageId) {
+		return new PublishResult(message, messageId, null);
+	}
+
+	public static PublishResult failure(OutgoingMessage message, Throwable error) {
+		return new PublishResult(message, null, error);
+	}
+
+	public boolean isSuccess() {
+		return error == null;
+	}
+}
@@ -0,0 +1,65 @@
+package com.victorlh.gcp.spring.libpubsub.consumer;
+
+import com.google.api.core.ApiFutures;
+import com.google.cloud.pubsub.v1.AckReplyConsumer;
+import com.google.pubsub.v1.PubsubMessage;
+import com.victorlh.gcp.spring.libpubsub.publisher.PubSubPublisher;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class FailureHandlerTest {
+
+	private static final PubsubMessage MESSAGE = PubsubMessage.newBuilder().setMessageId("message-1").build();
+
+	@Test
+	void explicitNackIsSentWithDefaultPolicy() {
+		FailureHandler failureHandler = newFailureHandler(0, null);
+		AckReplyConsumer ackReplyConsumer = mock(AckReplyConsumer.class);
+
+		failureHandler.onNack(MESSAGE, ackReplyConsumer, new IllegalStateException("Nack from batch listener"));
+
+		verify(ackReplyConsumer).nack();
+		verify(ackReplyConsumer, never()).ack();
+	}
+
+	@Test
+	void failureIsNotAnsweredWithDefaultPolicy() {
+		FailureHandler failureHandler = newFailureHandler(0, null);
+		AckReplyConsumer ackReplyConsumer = mock(AckReplyConsumer.class);
+
+		failureHandler.onFailure(MESSAGE, ackReplyConsumer, new IllegalStateException("listener error"));
+
+		verifyNoInteractions(ackReplyConsumer);
+	}
+
+	@Test
+	void explicitNackCountsTowardsDeadLetter() {
+		PubSubPublisher publisher = mock(PubSubPublisher.class);
+		when(publisher.sendMessage(eq("dead-letter"), any(PubsubMessage.class))).thenReturn(ApiFutures.immediateFuture("dead-letter-1"));
+		FailureHandler failureHandler = newFailureHandler(2, publisher);
+		AckReplyConsumer first = mock(AckReplyConsumer.class);
+		AckReplyConsumer second = mock(AckReplyConsumer.class);
+
+		failureHandler.onNack(MESSAGE, first, new IllegalStateException("Nack from batch listener"));
+		failureHandler.onNack(MESSAGE, second, new IllegalStateException("Nack from batch listener"));
+
+		verify(first).nack();
+		verify(publisher).sendMessage(eq("dead-letter"), any(PubsubMessage.class));
+		verify(second).ack();
+		verify(second, never()).nack();
+	}
+
+	private static FailureHandler newFailureHandler(int maxDeliveryAttempts, PubSubPublisher publisher) {
+		return new FailureHandler("subscription", FailurePolicy.NONE, Duration.ofSeconds(1), Duration.ofSeconds(10),
+				maxDeliveryAttempts, "dead-letter", () -> publisher);
+	}
+}
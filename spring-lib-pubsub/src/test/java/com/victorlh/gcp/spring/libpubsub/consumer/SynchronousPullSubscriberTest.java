@@ -0,0 +1,78 @@
+package com.victorlh.gcp.spring.libpubsub.consumer;
+
+import com.google.api.gax.rpc.UnaryCallable;
+import com.google.cloud.pubsub.v1.MessageReceiver;
+import com.google.cloud.pubsub.v1.stub.SubscriberStub;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.google.protobuf.Empty;
+import com.google.pubsub.v1.AcknowledgeRequest;
+import com.google.pubsub.v1.ModifyAckDeadlineRequest;
+import com.google.pubsub.v1.PubsubMessage;
+import com.google.pubsub.v1.PullRequest;
+import com.google.pubsub.v1.PullResponse;
+import com.google.pubsub.v1.ReceivedMessage;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SynchronousPullSubscriberTest {
+
+	private static final String SUBSCRIPTION = "projects/project/subscriptions/subscription";
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void messagesPulledWhileStoppingAreNacked() {
+		CountDownLatch pulling = new CountDownLatch(1);
+		CountDownLatch stopped = new CountDownLatch(1);
+		List<ModifyAckDeadlineRequest> modifyRequests = new CopyOnWriteArrayList<>();
+		List<PubsubMessage> received = new CopyOnWriteArrayList<>();
+
+		UnaryCallable<PullRequest, PullResponse> pullCallable = mock(UnaryCallable.class);
+		when(pullCallable.call(any())).thenAnswer(invocation -> {
+			// stop() cierra el executor mientras el pull esta en curso, la respuesta llega despues
+			pulling.countDown();
+			Uninterruptibles.awaitUninterruptibly(stopped);
+			return PullResponse.newBuilder()
+					.addReceivedMessages(ReceivedMessage.newBuilder().setAckId("ack-1").setMessage(PubsubMessage.newBuilder().setMessageId("1")))
+					.addReceivedMessages(ReceivedMessage.newBuilder().setAckId("ack-2").setMessage(PubsubMessage.newBuilder().setMessageId("2")))
+					.build();
+		});
+		UnaryCallable<ModifyAckDeadlineRequest, Empty> modifyAckDeadlineCallable = mock(UnaryCallable.class);
+		when(modifyAckDeadlineCallable.call(any())).thenAnswer(invocation -> {
+			modifyRequests.add(invocation.getArgument(0));
+			return Empty.getDefaultInstance();
+		});
+		UnaryCallable<AcknowledgeRequest, Empty> acknowledgeCallable = mock(UnaryCallable.class);
+
+		SubscriberStub stub = mock(SubscriberStub.class);
+		when(stub.pullCallable()).thenReturn(pullCallable);
+		when(stub.modifyAckDeadlineCallable()).thenReturn(modifyAckDeadlineCallable);
+		when(stub.acknowledgeCallable()).thenReturn(acknowledgeCallable);
+
+		MessageReceiver receiver = (message, ackReplyConsumer) -> received.add(message);
+		SynchronousPullSubscriber subscriber = new SynchronousPullSubscriber(SUBSCRIPTION, () -> stub, receiver, 10, 10, 1, 10,
+				Duration.ofMillis(100), Duration.ofMinutes(1));
+		subscriber.start();
+		Uninterruptibles.awaitUninterruptibly(pulling);
+		subscriber.stop();
+		stopped.countDown();
+
+		long startNanos = System.nanoTime();
+		assertThat(subscriber.awaitTerminated(Duration.ofSeconds(10))).isTrue();
+		assertThat(Duration.ofNanos(System.nanoTime() - startNanos)).isLessThan(Duration.ofSeconds(5));
+
+		assertThat(received).isEmpty();
+		assertThat(modifyRequests)
+				.filteredOn(request -> request.getAckDeadlineSeconds() == 0)
+				.flatExtracting(ModifyAckDeadlineRequest::getAckIdsList)
+				.containsExactlyInAnyOrder("ack-1", "ack-2");
+	}
+}
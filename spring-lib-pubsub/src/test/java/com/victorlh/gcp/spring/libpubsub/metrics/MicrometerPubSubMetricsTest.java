@@ -0,0 +1,69 @@
+package com.victorlh.gcp.spring.libpubsub.metrics;
+
+import com.google.cloud.pubsub.v1.AckReplyConsumer;
+import com.google.cloud.pubsub.v1.MessageReceiver;
+import com.google.pubsub.v1.PubsubMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class MicrometerPubSubMetricsTest {
+
+	private static final PubsubMessage MESSAGE = PubsubMessage.newBuilder().setMessageId("message-1").build();
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final MicrometerPubSubMetrics metrics = new MicrometerPubSubMetrics(meterRegistry);
+
+	@Test
+	void unansweredMessageLeavesInFlightOnce() {
+		AckReplyConsumer ackReplyConsumer = mock(AckReplyConsumer.class);
+		MessageReceiver receiver = metrics.instrument("subscription", (message, reply) -> {
+			InstrumentedAckReplyConsumer.noReply(reply);
+			reply.ack();
+		});
+
+		receiver.receiveMessage(MESSAGE, ackReplyConsumer);
+
+		verify(ackReplyConsumer).ack();
+		assertThat(inFlight()).isZero();
+		assertThat(handlingCount("none")).isEqualTo(1);
+		assertThat(handlingCount("ack")).isZero();
+	}
+
+	@Test
+	void throwingReceiverLeavesInFlight() {
+		MessageReceiver receiver = metrics.instrument("subscription", (message, reply) -> {
+			throw new IllegalStateException("receiver error");
+		});
+
+		assertThatThrownBy(() -> receiver.receiveMessage(MESSAGE, mock(AckReplyConsumer.class))).isInstanceOf(IllegalStateException.class);
+
+		assertThat(inFlight()).isZero();
+		assertThat(handlingCount("none")).isEqualTo(1);
+	}
+
+	@Test
+	void laterReplyKeepsMessageInFlight() {
+		AckReplyConsumer[] pending = new AckReplyConsumer[1];
+		MessageReceiver receiver = metrics.instrument("subscription", (message, reply) -> pending[0] = reply);
+
+		receiver.receiveMessage(MESSAGE, mock(AckReplyConsumer.class));
+		assertThat(inFlight()).isEqualTo(1);
+
+		pending[0].nack();
+		assertThat(inFlight()).isZero();
+		assertThat(handlingCount("nack")).isEqualTo(1);
+	}
+
+	private double inFlight() {
+		return meterRegistry.get("pubsub.listener.inflight").tag("subscription", "subscription").gauge().value();
+	}
+
+	private long handlingCount(String outcome) {
+		return meterRegistry.get("pubsub.listener.handling").tag("subscription", "subscription").tag("outcome", outcome).timer().count();
+	}
+}